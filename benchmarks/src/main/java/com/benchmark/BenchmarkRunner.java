@@ -0,0 +1,32 @@
+package com.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 基准测试入口
+ *
+ * mvn -pl benchmarks -am package 之后运行：java -jar benchmarks/target/benchmarks.jar [JMH 参数]
+ * 支持所有 JMH 命令行参数，例如只跑线程池相关的测试：java -jar benchmarks.jar ThreadPool -prof gc
+ *
+ * 如果没有通过 -rf / -rff 指定，结果默认以 JSON 格式写入 target/jmh-result-{版本号}.json，便于在不同版本之间对比回归
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            String version = BenchmarkRunner.class.getPackage().getImplementationVersion();
+            options.result("target/jmh-result-" + (version == null ? "dev" : version) + ".json");
+        }
+        new Runner(options.build()).run();
+    }
+}
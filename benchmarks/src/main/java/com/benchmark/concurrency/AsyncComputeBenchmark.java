@@ -0,0 +1,79 @@
+package com.benchmark.concurrency;
+
+import com.concurrency.base.completableFuture.AsyncComputeService;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.*;
+
+/**
+ * 同时挂起 outstanding 个未完成的 future，全部完成所需的时间
+ * timerCompleted: AsyncComputeService + 单个定时线程完成 future
+ * sleepingPool:   CalculateAsync 最初的写法，每个 future 由一个线程池线程 sleep 之后完成（线程池上限 poolSize）
+ * 每轮结束时打印 JVM 的峰值线程数
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class AsyncComputeBenchmark {
+    private static final long DELAY_MILLIS = 10;
+
+    @Param({"100000"})
+    public int outstanding;
+
+    @Param({"200"})
+    public int poolSize;
+
+    private ScheduledThreadPoolExecutor timer;
+    private ExecutorService sleepingPool;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        timer = new ScheduledThreadPoolExecutor(1);
+        timer.setRemoveOnCancelPolicy(true);
+        sleepingPool = Executors.newFixedThreadPool(poolSize);
+        threads.resetPeakThreadCount();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        System.out.println("peak threads: " + threads.getPeakThreadCount());
+        timer.shutdownNow();
+        sleepingPool.shutdownNow();
+    }
+
+    @Benchmark
+    public Object timerCompleted() {
+        AsyncComputeService<Integer, Integer> service = new AsyncComputeService<>(
+                key -> AsyncComputeService.delayed(() -> key, DELAY_MILLIS, TimeUnit.MILLISECONDS, timer));
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[outstanding];
+        for (int i = 0; i < outstanding; i++) {
+            futures[i] = service.get(i);
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    public Object sleepingPool() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[outstanding];
+        for (int i = 0; i < outstanding; i++) {
+            CompletableFuture<Integer> future = new CompletableFuture<>();
+            int value = i;
+            sleepingPool.submit(() -> {
+                try {
+                    Thread.sleep(DELAY_MILLIS);
+                    future.complete(value);
+                } catch (InterruptedException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+            futures[i] = future;
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+}
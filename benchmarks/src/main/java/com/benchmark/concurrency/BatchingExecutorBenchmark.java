@@ -0,0 +1,100 @@
+package com.benchmark.concurrency;
+
+import com.concurrency.base.guava.BatchingExecutor;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * 提交 TASKS 个极小的任务并等待全部完成，吞吐量按单个任务计算（ops/s 即 tasks/s）
+ * 每个任务的分配字节数使用 -prof gc 查看 gc.alloc.rate.norm
+ *
+ * directSubmit:   ExecutorService.submit()，每个任务一个 FutureTask、一次入队
+ * directExecute:  ExecutorService.execute()，没有 Future，但仍然每个任务一次入队
+ * batchedSubmit:  BatchingExecutor.submit()，每个任务一个 ListenableFuture，每批一次入队
+ * batchedExecute: BatchingExecutor.execute()，每批一次入队
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class BatchingExecutorBenchmark {
+    private static final int TASKS = 10_000;
+
+    @Param({"64"})
+    public int batchSize;
+
+    private ExecutorService pool;
+    private BatchingExecutor batching;
+
+    @Setup
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        batching = new BatchingExecutor(pool, batchSize, 1, TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        batching.close();
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public Future<?> directSubmit() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        Callable<Integer> task = () -> {
+            done.countDown();
+            return 1;
+        };
+        Future<?> last = null;
+        for (int i = 0; i < TASKS; i++) {
+            last = pool.submit(task);
+        }
+        done.await();
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void directExecute() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        Runnable task = done::countDown;
+        for (int i = 0; i < TASKS; i++) {
+            pool.execute(task);
+        }
+        done.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public ListenableFuture<?> batchedSubmit() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        Callable<Integer> task = () -> {
+            done.countDown();
+            return 1;
+        };
+        ListenableFuture<?> last = null;
+        for (int i = 0; i < TASKS; i++) {
+            last = batching.submit(task);
+        }
+        batching.flush();
+        done.await();
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TASKS)
+    public void batchedExecute() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        Runnable task = done::countDown;
+        for (int i = 0; i < TASKS; i++) {
+            batching.execute(task);
+        }
+        batching.flush();
+        done.await();
+    }
+}
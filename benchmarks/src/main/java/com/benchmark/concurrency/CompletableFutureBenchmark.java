@@ -0,0 +1,42 @@
+package com.benchmark.concurrency;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ComputeCompletableFuture 中各种链式调用的开销
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CompletableFutureBenchmark {
+
+    @Benchmark
+    public String supplyAsync() {
+        return CompletableFuture.supplyAsync(() -> "hello").join();
+    }
+
+    @Benchmark
+    public String completedThenApply() {
+        return CompletableFuture.completedFuture("hello").thenApply(s -> s + " world").join();
+    }
+
+    @Benchmark
+    public String supplyAsyncThenApply() {
+        return CompletableFuture.supplyAsync(() -> "hello").thenApply(s -> s + " world").join();
+    }
+
+    @Benchmark
+    public void supplyAsyncThenAcceptThenRun(Blackhole blackhole) {
+        CompletableFuture.supplyAsync(() -> "hello")
+                .thenAccept(blackhole::consume)
+                .thenRun(() -> blackhole.consume(1))
+                .join();
+    }
+}
@@ -0,0 +1,96 @@
+package com.benchmark.concurrency;
+
+import com.concurrency.base.forkJoinPool.ArrayRangeReduceTask;
+import com.concurrency.base.forkJoinPool.CompactTree;
+import com.concurrency.base.forkJoinPool.CountingTask;
+import com.concurrency.base.forkJoinPool.CustomRecursiveTask;
+import com.concurrency.base.forkJoinPool.LongMonoid;
+import com.concurrency.base.forkJoinPool.TreeNode;
+import com.concurrency.base.forkJoinPool.TreeReduceTask;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * fork/join 示例的基准测试
+ * customRecursiveTask: 不同 THRESHOLD 下的过滤-映射-求和
+ * arrayRangeReduceTask: 同样的计算，使用共享数组的下标区间拆分（零拷贝）
+ * countingTask: CountingTask 对一棵随机树求和
+ * treeReduceTask: 同一棵树，使用迭代遍历 + 惰性拆分的 TreeReduceTask
+ * compactTree: 同一棵树转换成数组化的 CompactTree 后归约
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ForkJoinBenchmark {
+
+    @Param({"20", "1000", "10000"})
+    public int threshold;
+
+    @Param({"1000000"})
+    public int size;
+
+    private int[] array;
+    private TreeNode tree;
+    private CompactTree compactTree;
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        array = new int[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = random.nextInt(40);
+        }
+        tree = randomTree(random, 6, 8);
+        compactTree = CompactTree.from(tree);
+    }
+
+    @Benchmark
+    public int customRecursiveTask() {
+        return pool.invoke(new CustomRecursiveTask(array, threshold));
+    }
+
+    @Benchmark
+    public long arrayRangeReduceTask() {
+        return ArrayRangeReduceTask.reduce(array, 0, array.length, threshold,
+                ArrayRangeReduceTask.DEFAULT_FILTER, ArrayRangeReduceTask.DEFAULT_MAPPER, pool);
+    }
+
+    @Benchmark
+    public long arrayRangeReduceTaskAutoThreshold() {
+        return ArrayRangeReduceTask.reduce(array, ArrayRangeReduceTask.DEFAULT_FILTER, ArrayRangeReduceTask.DEFAULT_MAPPER);
+    }
+
+    @Benchmark
+    public int countingTask() {
+        return pool.invoke(new CountingTask(tree));
+    }
+
+    @Benchmark
+    public long treeReduceTask() {
+        return TreeReduceTask.reduce(tree, LongMonoid.SUM, TreeReduceTask.DEFAULT_CUTOFF, pool);
+    }
+
+    @Benchmark
+    public long compactTree() {
+        return compactTree.reduce(LongMonoid.SUM, pool);
+    }
+
+    // 深度为 depth、每个节点最多 maxChildren 个子节点的随机树
+    static TreeNode randomTree(Random random, int depth, int maxChildren) {
+        if (depth == 0) {
+            return new TreeNode(random.nextInt(100));
+        }
+        TreeNode[] children = new TreeNode[1 + random.nextInt(maxChildren)];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = randomTree(random, depth - 1, maxChildren);
+        }
+        return new TreeNode(random.nextInt(100), children);
+    }
+}
@@ -0,0 +1,84 @@
+package com.benchmark.concurrency;
+
+import com.concurrency.base.HashedWheelTimer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * 设置 timeouts 个 30 秒的超时然后全部取消（典型的请求超时场景），每轮一次
+ * jdkScheduler:             Executors.newSingleThreadScheduledExecutor()，被取消的任务留在队列中直到到期
+ * jdkSchedulerRemoveOnCancel: 开启 removeOnCancelPolicy，取消时从堆中删除，O(log n)
+ * hashedWheelTimer:         O(1) 插入与取消
+ * 每轮结束时打印调度器中残留的任务数
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class HashedWheelTimerBenchmark {
+
+    @Param({"1000000"})
+    public int timeouts;
+
+    private ScheduledThreadPoolExecutor jdkScheduler;
+    private ScheduledThreadPoolExecutor jdkRemoveOnCancel;
+    private ExecutorService worker;
+    private HashedWheelTimer wheelTimer;
+    private ScheduledFuture<?>[] futures;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        jdkScheduler = (ScheduledThreadPoolExecutor) Executors.newScheduledThreadPool(1);
+        jdkRemoveOnCancel = new ScheduledThreadPoolExecutor(1);
+        jdkRemoveOnCancel.setRemoveOnCancelPolicy(true);
+        worker = Executors.newSingleThreadExecutor();
+        wheelTimer = new HashedWheelTimer(worker);
+        futures = new ScheduledFuture<?>[timeouts];
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws InterruptedException {
+        // 给时间轮一个 tick 处理取消队列
+        Thread.sleep(10);
+        System.out.println("left in queue: jdk=" + jdkScheduler.getQueue().size()
+                + ", jdkRemoveOnCancel=" + jdkRemoveOnCancel.getQueue().size()
+                + ", wheel=" + wheelTimer.getScheduledCount());
+        jdkScheduler.shutdownNow();
+        jdkRemoveOnCancel.shutdownNow();
+        wheelTimer.shutdownNow();
+        worker.shutdownNow();
+    }
+
+    @Benchmark
+    public int jdkScheduler() {
+        return scheduleAndCancel(jdkScheduler);
+    }
+
+    @Benchmark
+    public int jdkSchedulerRemoveOnCancel() {
+        return scheduleAndCancel(jdkRemoveOnCancel);
+    }
+
+    @Benchmark
+    public int hashedWheelTimer() {
+        return scheduleAndCancel(wheelTimer);
+    }
+
+    private int scheduleAndCancel(ScheduledExecutorService scheduler) {
+        Runnable timeout = () -> {
+        };
+        for (int i = 0; i < timeouts; i++) {
+            futures[i] = scheduler.schedule(timeout, 30, TimeUnit.SECONDS);
+        }
+        int cancelled = 0;
+        for (int i = 0; i < timeouts; i++) {
+            if (futures[i].cancel(false)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+}
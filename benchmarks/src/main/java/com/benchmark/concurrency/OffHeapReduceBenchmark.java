@@ -0,0 +1,87 @@
+package com.benchmark.concurrency;
+
+import com.concurrency.base.forkJoinPool.ArrayRangeReduceTask;
+import com.concurrency.base.forkJoinPool.BufferRangeReduceTask;
+import com.concurrency.base.forkJoinPool.CustomRecursiveTask;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 堆内数组与堆外 IntBuffer（直接内存、内存映射文件）上的过滤-映射-求和对比
+ * GC 停顿需要配合 GC profiler 查看：java -jar benchmarks.jar OffHeapReduce -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class OffHeapReduceBenchmark {
+
+    @Param({"10000000"})
+    public int size;
+
+    private int[] array;
+    private IntBuffer direct;
+    private IntBuffer mapped;
+    private Path file;
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        array = new int[size];
+        for (int i = 0; i < size; i++) {
+            array[i] = random.nextInt(40);
+        }
+        ByteBuffer bytes = ByteBuffer.allocateDirect(size * 4).order(ByteOrder.nativeOrder());
+        bytes.asIntBuffer().put(array);
+        direct = bytes.asIntBuffer();
+
+        file = Files.createTempFile("offheap-reduce", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            bytes.clear();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int heapCustomRecursiveTask() {
+        return pool.invoke(new CustomRecursiveTask(array, 10_000));
+    }
+
+    @Benchmark
+    public long heapArrayRange() {
+        return ArrayRangeReduceTask.reduce(array, ArrayRangeReduceTask.DEFAULT_FILTER, ArrayRangeReduceTask.DEFAULT_MAPPER);
+    }
+
+    @Benchmark
+    public long directBuffer() {
+        return BufferRangeReduceTask.reduce(direct, ArrayRangeReduceTask.DEFAULT_FILTER, ArrayRangeReduceTask.DEFAULT_MAPPER);
+    }
+
+    @Benchmark
+    public long mappedBuffer() {
+        return BufferRangeReduceTask.reduce(mapped, ArrayRangeReduceTask.DEFAULT_FILTER, ArrayRangeReduceTask.DEFAULT_MAPPER);
+    }
+}
@@ -0,0 +1,209 @@
+package com.benchmark.concurrency;
+
+import com.concurrency.base.RingBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * 生产者到一个消费者线程的交接：LinkedBlockingQueue / ArrayBlockingQueue 与三种等待策略的 RingBuffer
+ *
+ * throughput: producers 个线程共交接 ITEMS 个元素，消费者批量取出（BlockingQueue.drainTo() / RingBuffer.drain()），
+ *             得分为每秒交接的元素数
+ * pingPong:   基准线程放入一个元素，消费者收到后从另一个同类型的队列发回，SampleTime 模式下输出往返延迟的分位数（p0.99 即 p99），
+ *             与 producers 参数无关
+ *
+ * 容量都是 1024；producers 为 1 时 RingBuffer 使用 ProducerType.SINGLE。
+ * BUSY_SPIN 的消费者会占满一个核，核数少于生产者数 + 1 时结果没有意义。
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RingBufferBenchmark {
+    private static final int ITEMS = 100_000;
+    private static final int CAPACITY = 1024;
+    private static final int BATCH = 256;
+    private static final Object ITEM = new Object();
+    private static final Object PING = new Object();
+    private static final Object STOP = new Object();
+
+    @Param({"linkedBlockingQueue", "arrayBlockingQueue", "ringBufferBusySpin", "ringBufferYield", "ringBufferPark"})
+    public String queue;
+
+    @Param({"1", "4"})
+    public int producers;
+
+    private Handoff forward;
+    private Handoff backward;
+    private Thread consumer;
+    private ExecutorService producerPool;
+    private List<Callable<Void>> producerTasks;
+    private volatile long consumed;
+    private long expected;
+
+    @Setup
+    public void setUp() {
+        forward = newHandoff(queue, producers == 1 ? RingBuffer.ProducerType.SINGLE : RingBuffer.ProducerType.MULTI);
+        backward = newHandoff(queue, RingBuffer.ProducerType.SINGLE);
+        consumer = new Thread(this::consume, "handoff-consumer");
+        consumer.start();
+        producerPool = Executors.newFixedThreadPool(producers);
+        producerTasks = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            producerTasks.add(() -> {
+                for (int i = 0; i < ITEMS / producers; i++) {
+                    forward.put(ITEM);
+                }
+                return null;
+            });
+        }
+        consumed = 0;
+        expected = 0;
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        forward.put(STOP);
+        consumer.join();
+        producerPool.shutdownNow();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(ITEMS)
+    public long throughput() throws Exception {
+        expected += ITEMS / producers * producers;
+        for (Future<Void> future : producerPool.invokeAll(producerTasks)) {
+            future.get();
+        }
+        while (consumed < expected) {
+            Thread.yield();
+        }
+        return consumed;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Object pingPong() throws InterruptedException {
+        forward.put(PING);
+        return backward.take();
+    }
+
+    private void consume() {
+        long count = 0;
+        boolean[] stopped = new boolean[1];
+        long[] received = new long[1];
+        Consumer<Object> handler = item -> {
+            if (item == ITEM) {
+                received[0]++;
+            } else if (item == PING) {
+                try {
+                    backward.put(PING);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                stopped[0] = true;
+            }
+        };
+        try {
+            while (!stopped[0]) {
+                forward.drain(handler);
+                if (received[0] != count) {
+                    count = received[0];
+                    consumed = count;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Handoff newHandoff(String queue, RingBuffer.ProducerType producerType) {
+        switch (queue) {
+            case "linkedBlockingQueue":
+                return new QueueHandoff(new LinkedBlockingQueue<>(CAPACITY));
+            case "arrayBlockingQueue":
+                return new QueueHandoff(new ArrayBlockingQueue<>(CAPACITY));
+            case "ringBufferBusySpin":
+                return new RingHandoff(new RingBuffer<>(CAPACITY, producerType, RingBuffer.WaitStrategy.BUSY_SPIN));
+            case "ringBufferYield":
+                return new RingHandoff(new RingBuffer<>(CAPACITY, producerType, RingBuffer.WaitStrategy.YIELD));
+            case "ringBufferPark":
+                return new RingHandoff(new RingBuffer<>(CAPACITY, producerType, RingBuffer.WaitStrategy.PARK));
+            default:
+                throw new IllegalArgumentException("unknown queue: " + queue);
+        }
+    }
+
+    interface Handoff {
+        void put(Object item) throws InterruptedException;
+
+        Object take() throws InterruptedException;
+
+        // 批量取出并处理，为空时阻塞到至少有一个元素
+        void drain(Consumer<Object> handler) throws InterruptedException;
+    }
+
+    static final class QueueHandoff implements Handoff {
+        private final BlockingQueue<Object> queue;
+        private final List<Object> batch = new ArrayList<>(BATCH);
+
+        QueueHandoff(BlockingQueue<Object> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void put(Object item) throws InterruptedException {
+            queue.put(item);
+        }
+
+        @Override
+        public Object take() throws InterruptedException {
+            return queue.take();
+        }
+
+        @Override
+        public void drain(Consumer<Object> handler) throws InterruptedException {
+            if (queue.drainTo(batch, BATCH) == 0) {
+                handler.accept(queue.take());
+                return;
+            }
+            for (Object item : batch) {
+                handler.accept(item);
+            }
+            batch.clear();
+        }
+    }
+
+    static final class RingHandoff implements Handoff {
+        private final RingBuffer<Object> ring;
+
+        RingHandoff(RingBuffer<Object> ring) {
+            this.ring = ring;
+        }
+
+        @Override
+        public void put(Object item) throws InterruptedException {
+            ring.put(item);
+        }
+
+        @Override
+        public Object take() throws InterruptedException {
+            return ring.take();
+        }
+
+        @Override
+        public void drain(Consumer<Object> handler) throws InterruptedException {
+            if (ring.drain(handler, BATCH) == 0) {
+                ring.awaitNotEmpty(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
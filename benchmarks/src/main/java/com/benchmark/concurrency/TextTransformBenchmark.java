@@ -0,0 +1,78 @@
+package com.benchmark.concurrency;
+
+import com.concurrency.base.forkJoinPool.TextTransformTask;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 日志文本的大小写折叠
+ * stringToLowerCase: 单线程 new String(chars).toLowerCase()，每次产生两个完整大小的 String
+ * substringSplit: CustomRecursiveAction 的做法，每层拆分都 substring，叶子 toUpperCase()（去掉了 println）
+ * textTransformTask: 共享 char[] 的下标区间拆分，结果写入预先分配的输出数组
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class TextTransformBenchmark {
+
+    @Param({"10000000"})
+    public int length;
+
+    private char[] text;
+    private char[] output;
+    private final ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        String line = "2024-01-01 12:00:00 INFO Request GET /api/Users took 12ms\tStatus=OK\n";
+        text = new char[length];
+        for (int i = 0; i < length; i++) {
+            text[i] = random.nextInt(1000) == 0 ? 'É' : line.charAt(i % line.length());
+        }
+        output = new char[length];
+    }
+
+    @Benchmark
+    public String stringToLowerCase() {
+        return new String(text).toLowerCase();
+    }
+
+    @Benchmark
+    public int substringSplit() {
+        return pool.invoke(new SubstringTask(new String(text)));
+    }
+
+    @Benchmark
+    public char[] textTransformTask() {
+        TextTransformTask.transform(text, output, TextTransformTask.CASE_FOLD);
+        return output;
+    }
+
+    // CustomRecursiveAction 的拆分方式，返回结果长度以免被优化掉
+    static final class SubstringTask extends RecursiveTask<Integer> {
+        private final String workload;
+
+        SubstringTask(String workload) {
+            this.workload = workload;
+        }
+
+        @Override
+        protected Integer compute() {
+            if (workload.length() <= 4096) {
+                return workload.toUpperCase().length();
+            }
+            int mid = workload.length() / 2;
+            SubstringTask right = new SubstringTask(workload.substring(mid));
+            right.fork();
+            return new SubstringTask(workload.substring(0, mid)).compute() + right.join();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.benchmark.concurrency;
+
+import com.concurrency.base.ThreadPoolExample;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ThreadPoolExample（有界队列的固定线程池）与缓存线程池的对比
+ * 每次调用提交 TASKS 个短任务，等待全部完成，得分为每秒完成的批次数
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ThreadPoolBenchmark {
+    private static final int TASKS = 1000;
+
+    @Param({"0", "1000"})
+    public int tokensPerTask;
+
+    private ThreadPoolExample threadPoolExample;
+    private ExecutorService cachedThreadPool;
+
+    @Setup
+    public void setUp() {
+        int poolSize = Runtime.getRuntime().availableProcessors();
+        threadPoolExample = new ThreadPoolExample(poolSize, 1024, ThreadPoolExample.OverloadPolicy.CALLER_RUNS);
+        cachedThreadPool = Executors.newCachedThreadPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        threadPoolExample.shutdown();
+        cachedThreadPool.shutdown();
+    }
+
+    @Benchmark
+    public void threadPoolExample() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            threadPoolExample.submitTask(() -> {
+                Blackhole.consumeCPU(tokensPerTask);
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+    @Benchmark
+    public void cachedThreadPool() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        for (int i = 0; i < TASKS; i++) {
+            cachedThreadPool.execute(() -> {
+                Blackhole.consumeCPU(tokensPerTask);
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+}
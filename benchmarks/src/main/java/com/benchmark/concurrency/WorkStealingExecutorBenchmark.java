@@ -0,0 +1,68 @@
+package com.benchmark.concurrency;
+
+import com.concurrency.base.WorkStealingExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/**
+ * producers 个线程同时提交 TASKS 个极小的任务，直到全部执行完的时间，衡量的主要是提交与取任务的开销
+ * fixedThreadPool: 共享的 LinkedBlockingQueue
+ * forkJoinAsync:   ForkJoinPool 的 asyncMode（FIFO），外部提交走 submission queue
+ * workStealing:    WorkStealingExecutor，按生产者打散的提交队列 + 窃取
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WorkStealingExecutorBenchmark {
+    private static final int TASKS = 1 << 20;
+
+    @Param({"1", "8", "64"})
+    public int producers;
+
+    @Param({"fixedThreadPool", "forkJoinAsync", "workStealing"})
+    public String executorType;
+
+    private ExecutorService executor;
+    private ExecutorService producerPool;
+
+    @Setup
+    public void setUp() {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        switch (executorType) {
+            case "fixedThreadPool":
+                executor = Executors.newFixedThreadPool(parallelism);
+                break;
+            case "forkJoinAsync":
+                executor = new ForkJoinPool(parallelism, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+                break;
+            default:
+                executor = new WorkStealingExecutor(parallelism);
+        }
+        producerPool = Executors.newFixedThreadPool(producers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        producerPool.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public void submit() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(TASKS);
+        Runnable task = done::countDown;
+        int perProducer = TASKS / producers;
+        for (int p = 0; p < producers; p++) {
+            producerPool.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    executor.execute(task);
+                }
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,67 @@
+package com.benchmark.streams;
+
+import com.streams.IntLongHashMap;
+import com.streams.Person;
+import com.streams.PersonTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 按年龄分组：List<Person> 并行流 vs 列式 PersonTable
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PersonTableBenchmark {
+
+    @Param({"10000000"})
+    public int rows;
+
+    private List<Person> persons;
+    private PersonTable table;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        persons = new ArrayList<>(rows);
+        PersonTable.Builder builder = new PersonTable.Builder(rows);
+        for (int i = 0; i < rows; i++) {
+            String name = "name" + random.nextInt(10_000);
+            int age = random.nextInt(100);
+            persons.add(new Person(name, age));
+            builder.add(name, age);
+        }
+        table = builder.build();
+    }
+
+    @Benchmark
+    public Map<Integer, Long> streamCountByAge() {
+        return persons.parallelStream()
+                .collect(Collectors.groupingBy(Person::getAge, Collectors.counting()));
+    }
+
+    @Benchmark
+    public IntLongHashMap tableCountByAge() {
+        return table.countByAge();
+    }
+
+    @Benchmark
+    public Map<Integer, String> streamNamesByAge() {
+        return persons.parallelStream().collect(Collectors.groupingBy(Person::getAge,
+                Collectors.mapping(Person::getName, Collectors.joining(","))));
+    }
+
+    @Benchmark
+    public Map<Integer, String> tableNamesByAge() {
+        return table.namesByAge(",");
+    }
+}
@@ -0,0 +1,106 @@
+package com.benchmark.streams;
+
+import com.streams.ConcurrentStatistics;
+import com.streams.IntLongHashMap;
+import com.streams.IntObjectHashMap;
+import com.streams.Person;
+import com.streams.PrimitiveCollectors;
+import com.streams.Statistics;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * PrimitiveCollectors 与 CollectorsStreams 中使用的 JDK Collectors 对比
+ * 统计量：五个独立收集器（五次遍历） vs statistics / concurrentStatistics（一次遍历）
+ * 分组：groupingBy 装箱的 HashMap vs IntLongHashMap / IntObjectHashMap
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class PrimitiveCollectorsBenchmark {
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private List<Integer> numbers;
+    private List<Person> persons;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        numbers = new ArrayList<>();
+        persons = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++) {
+            numbers.add(random.nextInt(1000));
+            persons.add(new Person("name" + random.nextInt(1000), 18 + random.nextInt(60)));
+        }
+    }
+
+    @Benchmark
+    public void jdkSeparateCollectors(Blackhole bh) {
+        bh.consume(stream(numbers.stream()).collect(Collectors.averagingDouble(d -> d * 2)));
+        bh.consume(stream(numbers.stream()).collect(Collectors.summingInt(i -> i)));
+        bh.consume(stream(numbers.stream()).collect(Collectors.counting()));
+        bh.consume(stream(numbers.stream()).collect(Collectors.maxBy(Integer::compare)));
+        bh.consume(stream(numbers.stream()).collect(Collectors.minBy(Integer::compare)));
+    }
+
+    @Benchmark
+    public Object jdkSummarizingDouble() {
+        return stream(numbers.stream()).collect(Collectors.summarizingDouble(i -> i));
+    }
+
+    @Benchmark
+    public Statistics statistics() {
+        return stream(numbers.stream()).collect(PrimitiveCollectors.statistics(i -> i));
+    }
+
+    @Benchmark
+    public ConcurrentStatistics concurrentStatistics() {
+        return stream(numbers.stream()).collect(PrimitiveCollectors.concurrentStatistics(i -> i));
+    }
+
+    @Benchmark
+    public Map<Integer, Long> jdkGroupingByCounting() {
+        return stream(persons.stream()).collect(Collectors.groupingBy(Person::getAge,
+                Collectors.counting()));
+    }
+
+    @Benchmark
+    public IntLongHashMap countingByInt() {
+        return stream(persons.stream()).collect(PrimitiveCollectors.countingByInt(Person::getAge));
+    }
+
+    @Benchmark
+    public IntLongHashMap concurrentCountingByInt() {
+        return stream(persons.stream()).collect(
+                PrimitiveCollectors.concurrentCountingByInt(Person::getAge, 0, 150));
+    }
+
+    @Benchmark
+    public Map<Integer, String> jdkGroupingByMappingJoining() {
+        return stream(persons.stream()).collect(Collectors.groupingBy(Person::getAge,
+                Collectors.mapping(Person::getName, Collectors.joining(","))));
+    }
+
+    @Benchmark
+    public IntObjectHashMap<String> groupingByIntMappingJoining() {
+        return stream(persons.stream()).collect(PrimitiveCollectors.groupingByInt(Person::getAge,
+                Collectors.mapping(Person::getName, Collectors.joining(","))));
+    }
+
+    private <T> Stream<T> stream(Stream<T> stream) {
+        return parallel ? stream.parallel() : stream.sequential();
+    }
+}
@@ -0,0 +1,85 @@
+package com.benchmark.streams;
+
+import com.streams.Person;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * CreatingStreams / CollectorsStreams 中的流水线，顺序流与并行流对比
+ * 文本是随机生成的单词序列，避免依赖 gutenberg 目录下的文件
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class StreamsBenchmark {
+    private static final Pattern NON_LETTERS = Pattern.compile("\\PL+");
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private String contents;
+    private List<Integer> numbers;
+    private List<Person> persons;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500_000; i++) {
+            int length = 1 + random.nextInt(10);
+            for (int j = 0; j < length; j++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+            text.append(random.nextInt(10) == 0 ? ", " : " ");
+        }
+        contents = text.toString();
+
+        numbers = new ArrayList<>();
+        persons = new ArrayList<>();
+        for (int i = 0; i < 1_000_000; i++) {
+            numbers.add(random.nextInt(1000));
+            persons.add(new Person("name" + random.nextInt(1000), 18 + random.nextInt(60)));
+        }
+    }
+
+    @Benchmark
+    public long splitWords() {
+        return stream(Stream.of(contents.split("\\PL+"))).filter(w -> w.length() > 5).count();
+    }
+
+    @Benchmark
+    public long splitAsStream() {
+        return stream(NON_LETTERS.splitAsStream(contents)).filter(w -> w.length() > 5).count();
+    }
+
+    @Benchmark
+    public Double averagingDouble() {
+        return stream(numbers.stream()).collect(Collectors.averagingDouble(d -> d * 2));
+    }
+
+    @Benchmark
+    public Integer summingInt() {
+        return stream(numbers.stream()).collect(Collectors.summingInt(i -> i));
+    }
+
+    @Benchmark
+    public Map<Integer, String> groupingByMappingJoining() {
+        return stream(persons.stream()).collect(Collectors.groupingBy(Person::getAge,
+                Collectors.mapping(Person::getName, Collectors.joining(","))));
+    }
+
+    private <T> Stream<T> stream(Stream<T> stream) {
+        return parallel ? stream.parallel() : stream.sequential();
+    }
+}
@@ -0,0 +1,96 @@
+package com.benchmark.streams;
+
+import com.streams.WordCountMap;
+import com.streams.WordFrequency;
+import com.streams.WordSpliterator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 词频统计：WordFrequency（每个线程独立的开放寻址表）与 groupingBy(counting()) 对比，并行度从 1 到 8
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class WordFrequencyBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"50"})
+    public int megabytes;
+
+    private Path corpus;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() throws IOException {
+        corpus = Files.createTempFile("word-frequency", ".txt");
+        Random random = new Random(42);
+        String[] vocabulary = new String[50_000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + random.nextInt(9);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            vocabulary[i] = word.toString();
+        }
+        long target = megabytes * 1024L * 1024L;
+        try (Writer writer = Files.newBufferedWriter(corpus, StandardCharsets.UTF_8)) {
+            long written = 0;
+            while (written < target) {
+                // 近似 Zipf 分布：越靠前的单词出现得越频繁
+                String word = vocabulary[(int) (vocabulary.length * Math.pow(random.nextDouble(), 3))];
+                writer.write(word);
+                writer.write(random.nextInt(12) == 0 ? ".\n" : " ");
+                written += word.length() + 1;
+            }
+        }
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        Files.deleteIfExists(corpus);
+    }
+
+    @Benchmark
+    public WordCountMap wordFrequency() throws IOException {
+        return WordFrequency.count(corpus, pool);
+    }
+
+    @Benchmark
+    public Map<String, Long> groupingByCounting() {
+        return pool.submit(() -> {
+            try (Stream<String> words = WordSpliterator.words(corpus)) {
+                return words.parallel().collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+            }
+        }).join();
+    }
+
+    @Benchmark
+    public Map<String, Long> groupingByConcurrentCounting() {
+        return pool.submit(() -> {
+            try (Stream<String> words = WordSpliterator.words(corpus)) {
+                return words.parallel().collect(Collectors.groupingByConcurrent(Function.identity(), Collectors.counting()));
+            }
+        }).join();
+    }
+}
@@ -0,0 +1,150 @@
+package com.concurrency.base;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 根据排队延迟自适应调整 ThreadPoolExample 的线程数
+ *
+ * 按固定周期采样：队列深度、采样窗口内任务的平均排队时间、窗口内完成的任务数（吞吐量），然后用 AIMD + 爬山法 决定是否调整核心线程数：
+ * 1、 排队时间超过目标且队列中有积压：加性增加（每次 +1），但如果上一次是扩容而吞吐量反而下降了 10% 以上，说明线程已经多到互相争抢 CPU，回退一步
+ * 2、 队列为空、排队时间远低于目标，并且一半以上的线程处于空闲：乘性减少（缩到 3/4，但不低于正在工作的线程数）
+ * 3、 其他情况保持不变
+ * 线程数始终在 [minPoolSize, maxPoolSize] 之间，每次调整都会通过 listener 报告
+ */
+public class AdaptivePoolSizer {
+
+    /**
+     * 一次调整决策及其依据
+     */
+    public static final class ResizeDecision {
+        public final int fromSize;
+        public final int toSize;
+        public final String reason;
+        public final int queueDepth;
+        public final long meanQueueWaitMicros;
+        public final long completedPerSecond;
+
+        ResizeDecision(int fromSize, int toSize, String reason, int queueDepth,
+                       long meanQueueWaitMicros, long completedPerSecond) {
+            this.fromSize = fromSize;
+            this.toSize = toSize;
+            this.reason = reason;
+            this.queueDepth = queueDepth;
+            this.meanQueueWaitMicros = meanQueueWaitMicros;
+            this.completedPerSecond = completedPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return "resize " + fromSize + " -> " + toSize + " (" + reason + "): queueDepth=" + queueDepth
+                    + ", meanQueueWait=" + meanQueueWaitMicros + "us, throughput=" + completedPerSecond + "/s";
+        }
+    }
+
+    private final ThreadPoolExample pool;
+    private final int minPoolSize;
+    private final int maxPoolSize;
+    private final long targetQueueWaitNanos;
+    private final Consumer<ResizeDecision> listener;
+    // 每次 start() 创建、stop() 关闭，所以 stop() 之后可以再次 start()
+    private ScheduledExecutorService sampler;
+    private ScheduledFuture<?> samplingTask;
+
+    // 以下状态只在采样线程中访问
+    private long lastSampleTime;
+    private long lastCompleted;
+    private long lastWaitCount;
+    private long lastWaitTotal;
+    private long lastThroughput = -1;
+    private boolean lastWasGrow;
+
+    public AdaptivePoolSizer(ThreadPoolExample pool, int minPoolSize, int maxPoolSize,
+                             long targetQueueWait, TimeUnit unit, Consumer<ResizeDecision> listener) {
+        if (minPoolSize <= 0 || maxPoolSize < minPoolSize) {
+            throw new IllegalArgumentException("require 0 < minPoolSize <= maxPoolSize");
+        }
+        this.pool = pool;
+        this.minPoolSize = minPoolSize;
+        this.maxPoolSize = maxPoolSize;
+        this.targetQueueWaitNanos = unit.toNanos(targetQueueWait);
+        this.listener = listener;
+    }
+
+    public synchronized void start(long samplePeriod, TimeUnit unit) {
+        if (samplingTask != null) {
+            return;
+        }
+        lastSampleTime = System.nanoTime();
+        lastCompleted = pool.getCompletedCount();
+        lastWaitCount = pool.getQueueWaitTime().getCount();
+        lastWaitTotal = pool.getQueueWaitTime().getTotal();
+        lastThroughput = -1;
+        lastWasGrow = false;
+        // 采样线程设置为守护线程，不会阻止 JVM 退出
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "adaptive-pool-sizer");
+            t.setDaemon(true);
+            return t;
+        });
+        samplingTask = sampler.scheduleAtFixedRate(this::sample, samplePeriod, samplePeriod, unit);
+    }
+
+    public synchronized void stop() {
+        if (samplingTask == null) {
+            return;
+        }
+        samplingTask.cancel(false);
+        sampler.shutdownNow();
+        samplingTask = null;
+        sampler = null;
+    }
+
+    private void sample() {
+        long now = System.nanoTime();
+        long completed = pool.getCompletedCount();
+        long waitCount = pool.getQueueWaitTime().getCount();
+        long waitTotal = pool.getQueueWaitTime().getTotal();
+        int queueDepth = pool.getQueueSize();
+
+        long elapsed = Math.max(1L, now - lastSampleTime);
+        long throughput = (completed - lastCompleted) * TimeUnit.SECONDS.toNanos(1) / elapsed;
+        long windowCount = waitCount - lastWaitCount;
+        long meanWait = windowCount == 0 ? 0L : (waitTotal - lastWaitTotal) / windowCount;
+
+        lastSampleTime = now;
+        lastCompleted = completed;
+        lastWaitCount = waitCount;
+        lastWaitTotal = waitTotal;
+
+        int current = pool.getCorePoolSize();
+        int target = current;
+        String reason = null;
+        boolean grow = false;
+        if (meanWait > targetQueueWaitNanos && queueDepth > 0) {
+            if (lastWasGrow && lastThroughput > 0 && throughput < lastThroughput * 9 / 10) {
+                target = current - 1;
+                reason = "throughput dropped after growing";
+            } else {
+                target = current + 1;
+                reason = "queue wait above target";
+                grow = true;
+            }
+        } else if (queueDepth == 0 && meanWait < targetQueueWaitNanos / 2 && pool.getActiveCount() * 2 < current) {
+            target = Math.max(pool.getActiveCount(), current * 3 / 4);
+            reason = "idle threads";
+        }
+        target = Math.max(minPoolSize, Math.min(maxPoolSize, target));
+        lastThroughput = throughput;
+        lastWasGrow = grow && target > current;
+
+        if (target != current) {
+            pool.setPoolSize(target);
+            listener.accept(new ResizeDecision(current, target, reason, queueDepth,
+                    TimeUnit.NANOSECONDS.toMicros(meanWait), throughput));
+        }
+    }
+}
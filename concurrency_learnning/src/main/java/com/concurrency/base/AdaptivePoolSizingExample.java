@@ -0,0 +1,60 @@
+package com.concurrency.base;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对比手工指定线程数与自适应线程数在混合负载下的表现
+ *
+ * 负载由两类任务组成：70% 是阻塞任务（sleep 20ms，模拟 I/O），30% 是 CPU 任务（约 2ms 的计算）。
+ * 线程太少时阻塞任务把线程全部占住，队列越积越长；线程太多时 CPU 任务之间互相争抢。
+ * 分别运行 固定 2 个线程、固定 64 个线程、自适应 2~64 个线程 三种配置，输出总耗时和排队时间分布。
+ */
+public class AdaptivePoolSizingExample {
+    private static final int TASKS = 4000;
+    private static final long SUBMIT_INTERVAL_MICROS = 500;
+
+    private static volatile long blackhole;
+
+    public static void main(String[] args) throws InterruptedException {
+        run("fixed-2", new ThreadPoolExample(2, TASKS, ThreadPoolExample.OverloadPolicy.BLOCK_WITH_TIMEOUT), false);
+        run("fixed-64", new ThreadPoolExample(64, TASKS, ThreadPoolExample.OverloadPolicy.BLOCK_WITH_TIMEOUT), false);
+        run("adaptive-2..64", new ThreadPoolExample(2, TASKS, ThreadPoolExample.OverloadPolicy.BLOCK_WITH_TIMEOUT), true);
+    }
+
+    private static void run(String name, ThreadPoolExample pool, boolean adaptive) throws InterruptedException {
+        if (adaptive) {
+            pool.startAdaptiveSizing(2, 64, 5, 50, TimeUnit.MILLISECONDS);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < TASKS; i++) {
+            pool.submitTask(ThreadLocalRandom.current().nextInt(10) < 7
+                    ? AdaptivePoolSizingExample::blockingTask
+                    : AdaptivePoolSizingExample::cpuTask);
+            TimeUnit.MICROSECONDS.sleep(SUBMIT_INTERVAL_MICROS);
+        }
+        pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.MINUTES);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        System.out.println(name + ": elapsed=" + elapsedMillis + "ms, finalPoolSize=" + pool.getCorePoolSize()
+                + ", queueWait=[" + pool.getQueueWaitTime() + "]");
+    }
+
+    private static void blockingTask() {
+        try {
+            TimeUnit.MILLISECONDS.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void cpuTask() {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2);
+        long x = 0;
+        while (System.nanoTime() < deadline) {
+            x += ThreadLocalRandom.current().nextInt();
+        }
+        blackhole = x;
+    }
+}
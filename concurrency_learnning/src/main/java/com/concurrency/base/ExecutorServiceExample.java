@@ -15,7 +15,7 @@ public class ExecutorServiceExample {
         ExecutorService executorService = Executors.newFixedThreadPool(10);
 
         // 2.直接创建 ExecutorService 的实例 以下示例与工厂方法 newSingleThreadExecutor() 的 源代码 非常相似 ，所以一般情况下不需要详细的手动配置
-        //new ThreadPoolExecutor(1,1,0L, TimeUnit.MICROSECONDS,new LinkedBlockingQueue<Runnable>());
+        //new ThreadPoolExecutor(1,1,0L, TimeUnit.MILLISECONDS,new LinkedBlockingQueue<Runnable>());
 
         // 创建一个可运行的任务
         Runnable runnableTask = () -> {
@@ -42,6 +42,7 @@ public class ExecutorServiceExample {
          * submit(): 会将一个 Callable 或 Runnable 任务提交给 ExecutorService 并返回 Future 类型的结果
          * invokeAny(): 将一组任务分配给 ExecutorService，使每个任务执行，并返回任意一个成功执行的任务的结果 ( 如果成功执行 )
          * invokeAll(): 将一组任务分配给 ExecutorService ，使每个任务执行，并以 Future 类型的对象列表的形式返回所有任务执行的结果
+         *              invokeAll() 要等全部任务完成才返回，需要按完成顺序处理结果时可以使用 CompletionOrder.submit()
          */
         try {
             // 执行可运行的任务
@@ -62,7 +63,7 @@ public class ExecutorServiceExample {
 
             List<Future<String>> invokeAllFutures = executorService.invokeAll(callableTasks);
             for (Future<String> future : invokeAllFutures) {
-                System.out.println("invokeAll: 在300毫秒内" + future.get(300, TimeUnit.MICROSECONDS));
+                System.out.println("invokeAll: 在300毫秒内" + future.get(300, TimeUnit.MILLISECONDS));
             }
             /**
              * Future的其他方法
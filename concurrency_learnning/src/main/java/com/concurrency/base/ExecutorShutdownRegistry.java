@@ -0,0 +1,356 @@
+package com.concurrency.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 统一关闭所有执行器的注册表
+ *
+ * 每个线程池各注册一个关闭钩子、依次 shutdown() + awaitTermination() + shutdownNow() 时，N 个线程池最多要等 N 倍的超时时间，
+ * 并且 shutdownNow() 返回的未开始任务直接被丢弃。这里：
+ * 1、所有 ExecutorService（包括 ScheduledThreadPoolExecutor 和 ForkJoinPool）都注册到同一个注册表，只有一个全局截止时间
+ * 2、按 phase 从小到大分阶段关闭，生产者注册在较小的 phase，消费者在较大的 phase，生产者停止后消费者才开始关闭，
+ *    它们已经提交给消费者的任务不会被丢弃；同一阶段的线程池同时 shutdown()，并行排空
+ * 3、每个阶段平分剩余时间，先等待排空，到期仍未结束的才 shutdownNow() 中断；提前结束的阶段把剩余时间留给后面的阶段
+ * 4、shutdownNow() 返回的未开始任务交还给调用方，可以持久化或交给新实例，每个线程池生成一份报告
+ *
+ * ScheduledThreadPoolExecutor 中尚未到期的延迟任务会在关闭时直接取消（计入 cancelled），否则线程池要一直等到它们到期才能结束。
+ */
+public class ExecutorShutdownRegistry {
+    // 每个阶段的时间中用于等待排空的比例，其余时间留给 shutdownNow() 之后的等待
+    private static final double DRAIN_FRACTION = 0.75;
+    // 等待一个阶段时轮询各执行器的间隔，决定报告中结束时间的精度
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final TreeMap<Integer, List<Registration>> phases = new TreeMap<>();
+    private final AtomicBoolean shutdown = new AtomicBoolean();
+
+    /**
+     * 注册一个执行器，phase 较小的先关闭
+     */
+    public synchronized <E extends ExecutorService> E register(String name, E executor, int phase) {
+        if (shutdown.get()) {
+            throw new IllegalStateException("registry has been shut down");
+        }
+        phases.computeIfAbsent(phase, p -> new ArrayList<>()).add(new Registration(name, executor, phase));
+        return executor;
+    }
+
+    public <E extends ExecutorService> E register(String name, E executor) {
+        return register(name, executor, 0);
+    }
+
+    /**
+     * 在 timeout 内关闭所有注册的执行器，只能调用一次
+     */
+    public ShutdownReport shutdown(long timeout, TimeUnit unit) {
+        if (!shutdown.compareAndSet(false, true)) {
+            throw new IllegalStateException("registry has already been shut down");
+        }
+        List<List<Registration>> ordered;
+        synchronized (this) {
+            ordered = new ArrayList<>(phases.values());
+        }
+        long start = System.nanoTime();
+        long deadline = start + unit.toNanos(timeout);
+        List<PoolReport> reports = new ArrayList<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            long remaining = Math.max(0, deadline - System.nanoTime());
+            long phaseDeadline = System.nanoTime() + remaining / (ordered.size() - i);
+            reports.addAll(shutdownPhase(ordered.get(i), phaseDeadline));
+        }
+        return new ShutdownReport(reports, System.nanoTime() - start);
+    }
+
+    /**
+     * 注册一个 JVM 关闭钩子，在 timeout 内关闭所有执行器，并把报告交给 reportHandler
+     */
+    public void installShutdownHook(long timeout, TimeUnit unit, Consumer<ShutdownReport> reportHandler) {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> reportHandler.accept(shutdown(timeout, unit)),
+                "executor-shutdown-registry"));
+    }
+
+    private List<PoolReport> shutdownPhase(List<Registration> registrations, long phaseDeadline) {
+        long now = System.nanoTime();
+        long drainDeadline = now + (long) ((phaseDeadline - now) * DRAIN_FRACTION);
+        // 先让本阶段所有线程池同时开始排空，再一起等待，总等待时间不超过本阶段的期限
+        for (Registration registration : registrations) {
+            registration.beginShutdown();
+        }
+        awaitAll(registrations, drainDeadline);
+        for (Registration registration : registrations) {
+            if (!registration.isTerminated()) {
+                registration.forceShutdown();
+            }
+        }
+        awaitAll(registrations, phaseDeadline);
+        List<PoolReport> reports = new ArrayList<>(registrations.size());
+        for (Registration registration : registrations) {
+            reports.add(registration.report());
+        }
+        return reports;
+    }
+
+    // 轮流等待尚未结束的执行器，直到全部结束或到达期限，每个执行器的结束时间都能及时记录
+    private static void awaitAll(List<Registration> registrations, long deadline) {
+        while (true) {
+            Registration waiting = null;
+            for (Registration registration : registrations) {
+                if (!registration.isTerminated()) {
+                    waiting = registration;
+                    break;
+                }
+            }
+            long remaining = deadline - System.nanoTime();
+            if (waiting == null || remaining <= 0) {
+                return;
+            }
+            try {
+                waiting.executor.awaitTermination(Math.min(remaining, POLL_NANOS), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static final class Registration {
+        private final String name;
+        private final ExecutorService executor;
+        private final int phase;
+        private long startedAt;
+        private long completedBefore;
+        private int cancelled;
+        private List<Runnable> unstarted = Collections.emptyList();
+        private boolean forced;
+        private long terminatedAt;
+
+        Registration(String name, ExecutorService executor, int phase) {
+            this.name = name;
+            this.executor = executor;
+            this.phase = phase;
+        }
+
+        void beginShutdown() {
+            startedAt = System.nanoTime();
+            completedBefore = completedTaskCount(executor);
+            if (executor instanceof ScheduledThreadPoolExecutor) {
+                ScheduledThreadPoolExecutor scheduler = (ScheduledThreadPoolExecutor) executor;
+                int queuedBefore = scheduler.getQueue().size();
+                scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+                scheduler.setContinueExistingPeriodicTasksAfterShutdownPolicy(false);
+                executor.shutdown();
+                // 关闭时被取消并移出队列的延迟任务和周期任务
+                cancelled += Math.max(0, queuedBefore - scheduler.getQueue().size());
+            } else {
+                executor.shutdown();
+            }
+        }
+
+        boolean isTerminated() {
+            if (terminatedAt == 0 && executor.isTerminated()) {
+                terminatedAt = System.nanoTime();
+            }
+            return terminatedAt != 0;
+        }
+
+        void forceShutdown() {
+            forced = true;
+            // shutdownNow() 会中断正在执行的任务
+            cancelled += activeCount(executor);
+            if (executor instanceof ForkJoinPool) {
+                // ForkJoinPool.shutdownNow() 总是返回空列表，排队中的任务被直接取消
+                ForkJoinPool pool = (ForkJoinPool) executor;
+                cancelled += (int) Math.min(Integer.MAX_VALUE, pool.getQueuedSubmissionCount() + pool.getQueuedTaskCount());
+            }
+            unstarted = executor.shutdownNow();
+        }
+
+        PoolReport report() {
+            long completedAfter = completedTaskCount(executor);
+            long completed = completedBefore < 0 || completedAfter < 0 ? -1 : completedAfter - completedBefore;
+            Outcome outcome = !isTerminated() ? Outcome.ABANDONED : forced ? Outcome.FORCED : Outcome.DRAINED;
+            long end = terminatedAt != 0 ? terminatedAt : System.nanoTime();
+            return new PoolReport(name, phase, outcome, completed, cancelled, unstarted, end - startedAt);
+        }
+
+        private static long completedTaskCount(ExecutorService executor) {
+            return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getCompletedTaskCount() : -1;
+        }
+
+        private static int activeCount(ExecutorService executor) {
+            if (executor instanceof ThreadPoolExecutor) {
+                return ((ThreadPoolExecutor) executor).getActiveCount();
+            }
+            if (executor instanceof ForkJoinPool) {
+                return ((ForkJoinPool) executor).getActiveThreadCount();
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * DRAINED:   在排空期限内自行结束
+     * FORCED:    排空超时，shutdownNow() 之后结束
+     * ABANDONED: shutdownNow() 之后到截止时间仍未结束，任务不响应中断
+     */
+    public enum Outcome {
+        DRAINED,
+        FORCED,
+        ABANDONED
+    }
+
+    /**
+     * 单个执行器的关闭结果
+     */
+    public static final class PoolReport {
+        private final String name;
+        private final int phase;
+        private final Outcome outcome;
+        private final long completed;
+        private final int cancelled;
+        private final List<Runnable> unstarted;
+        private final long elapsedNanos;
+
+        PoolReport(String name, int phase, Outcome outcome, long completed, int cancelled, List<Runnable> unstarted,
+                   long elapsedNanos) {
+            this.name = name;
+            this.phase = phase;
+            this.outcome = outcome;
+            this.completed = completed;
+            this.cancelled = cancelled;
+            this.unstarted = unstarted;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getPhase() {
+            return phase;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        // 关闭期间执行完的任务数，只有 ThreadPoolExecutor 能统计，其他执行器为 -1
+        public long getCompleted() {
+            return completed;
+        }
+
+        // 被中断的执行中任务、被取消的延迟任务和 ForkJoinPool 中被取消的排队任务
+        public int getCancelled() {
+            return cancelled;
+        }
+
+        // shutdownNow() 返回的尚未开始的任务
+        public List<Runnable> getUnstarted() {
+            return unstarted;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "[phase " + phase + "] " + name + ": " + outcome + " in " + TimeUnit.NANOSECONDS.toMillis(elapsedNanos)
+                    + "ms, completed=" + (completed < 0 ? "n/a" : String.valueOf(completed))
+                    + ", cancelled=" + cancelled + ", unstarted=" + unstarted.size();
+        }
+    }
+
+    /**
+     * 所有执行器的关闭结果
+     */
+    public static final class ShutdownReport {
+        private final List<PoolReport> pools;
+        private final long elapsedNanos;
+
+        ShutdownReport(List<PoolReport> pools, long elapsedNanos) {
+            this.pools = Collections.unmodifiableList(pools);
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public List<PoolReport> getPools() {
+            return pools;
+        }
+
+        // 所有执行器中尚未开始的任务，按关闭顺序排列
+        public List<Runnable> getUnstartedTasks() {
+            List<Runnable> tasks = new ArrayList<>();
+            for (PoolReport pool : pools) {
+                tasks.addAll(pool.getUnstarted());
+            }
+            return tasks;
+        }
+
+        // 是否所有执行器都已结束
+        public boolean isTerminated() {
+            for (PoolReport pool : pools) {
+                if (pool.getOutcome() == Outcome.ABANDONED) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("shutdown in ")
+                    .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append("ms");
+            for (PoolReport pool : pools) {
+                sb.append(System.lineSeparator()).append("  ").append(pool);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * 生产者线程池不断向消费者线程池提交任务，关闭时先停生产者，再在剩余时间内排空消费者
+     */
+    public static void main(String[] args) throws InterruptedException {
+        ExecutorShutdownRegistry registry = new ExecutorShutdownRegistry();
+        ExecutorService producers = registry.register("producers", Executors.newFixedThreadPool(2), 0);
+        ScheduledThreadPoolExecutor scheduler = registry.register("scheduler", new ScheduledThreadPoolExecutor(1), 0);
+        // 消费者处理得比生产者慢，关闭时队列中有积压
+        ThreadPoolExecutor consumers = registry.register("consumers",
+                (ThreadPoolExecutor) Executors.newFixedThreadPool(2), 1);
+        ForkJoinPool compute = registry.register("compute", new ForkJoinPool(2), 1);
+
+        for (int p = 0; p < 2; p++) {
+            producers.execute(() -> {
+                for (int i = 0; i < 200 && !Thread.currentThread().isInterrupted(); i++) {
+                    consumers.execute(() -> sleep(20));
+                    sleep(5);
+                }
+            });
+        }
+        scheduler.scheduleAtFixedRate(() -> compute.execute(() -> sleep(1)), 0, 10, TimeUnit.MILLISECONDS);
+        scheduler.schedule(() -> System.out.println("never runs"), 1, TimeUnit.HOURS);
+        Thread.sleep(200);
+
+        ShutdownReport report = registry.shutdown(800, TimeUnit.MILLISECONDS);
+        System.out.println(report);
+        System.out.println("tasks handed back: " + report.getUnstartedTasks().size());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
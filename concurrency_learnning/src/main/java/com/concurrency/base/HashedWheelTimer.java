@@ -0,0 +1,451 @@
+package com.concurrency.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 时间轮定时器，实现 ScheduledExecutorService，适合大量短生命周期、大多会被取消的超时任务（如请求超时）
+ *
+ * ScheduledThreadPoolExecutor 的 DelayedWorkQueue 是一个二叉堆，schedule() 和 cancel() 都是 O(log n)，
+ * 而且默认情况下被取消的任务会一直留在队列里直到到期，大量设置又取消的超时会堆积在内存中。
+ *
+ * 时间轮把时间切成固定长度的 tick，wheel 数组的每个格子是一个双向链表，到期时间落在同一个 tick 的任务放在同一个格子里，
+ * 超过一圈的任务记录剩余圈数 remainingRounds：
+ * 1、schedule(): 只是把任务放进无锁的 pending 队列，O(1)，由 worker 线程在下一个 tick 挂到对应的格子上
+ * 2、cancel():   只是把任务放进 cancelled 队列，O(1)，由 worker 线程在下一个 tick 从链表中摘除，不会堆积
+ * 3、精度是一个 tick：任务最早在到期时间所在 tick 结束时触发，最晚再晚一个 tick
+ *
+ * 定时线程只负责推进时间轮，到期的任务交给单独的 worker 执行器执行，执行慢的任务不会拖慢时间轮。
+ * shutdown() 之后不再接受新任务，已经安排的一次性任务仍会按时触发，周期任务不再继续；worker 执行器由调用方自己关闭。
+ */
+public class HashedWheelTimer extends AbstractExecutorService implements ScheduledExecutorService {
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+    // 每个 tick 最多从 pending 队列转移的任务数，避免突发的 schedule() 让一个 tick 处理太久
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+    private static final AtomicIntegerFieldUpdater<HashedWheelTimer> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(HashedWheelTimer.class, "state");
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final Executor worker;
+    private final Thread timerThread;
+    private final long startTime = System.nanoTime();
+    private final Queue<WheelTask<?>> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<WheelTask<?>> cancelled = new ConcurrentLinkedQueue<>();
+    // 已安排但尚未触发或移除的任务数
+    private final AtomicLong scheduled = new AtomicLong();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile int state = RUNNING;
+    // 定时线程已离开主循环，之后再放进 pending 的任务不会被处理
+    private volatile boolean exited;
+    private List<Runnable> unprocessed = new ArrayList<>();
+    // 只由定时线程访问
+    private long tick;
+
+    public HashedWheelTimer(Executor worker) {
+        this(1, TimeUnit.MILLISECONDS, 512, worker);
+    }
+
+    /**
+     * @param tickDuration  每个格子代表的时间长度，即定时精度
+     * @param ticksPerWheel 格子数，会向上取整为 2 的幂，一圈覆盖 tickDuration * ticksPerWheel
+     * @param worker        执行到期任务的执行器
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int ticksPerWheel, Executor worker) {
+        if (tickDuration <= 0 || ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("tickDuration must be > 0 and ticksPerWheel must be in (0, 2^30]");
+        }
+        this.tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < wheel.length; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = wheel.length - 1;
+        this.worker = worker;
+        this.timerThread = new Thread(this::runTimer, "hashed-wheel-timer");
+        this.timerThread.setDaemon(true);
+        this.timerThread.start();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return add(new WheelTask<Void>(Executors.callable(command, null), deadlineAfter(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return add(new WheelTask<>(callable, deadlineAfter(delay, unit), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be > 0");
+        }
+        return add(new WheelTask<Void>(Executors.callable(command, null), deadlineAfter(initialDelay, unit),
+                unit.toNanos(period)));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay must be > 0");
+        }
+        return add(new WheelTask<Void>(Executors.callable(command, null), deadlineAfter(initialDelay, unit),
+                -unit.toNanos(delay)));
+    }
+
+    // 立即执行的任务不经过时间轮，直接交给 worker
+    @Override
+    public void execute(Runnable command) {
+        if (state != RUNNING) {
+            throw new RejectedExecutionException("timer has been shut down");
+        }
+        worker.execute(command);
+    }
+
+    // 尚未触发的任务数（包含已取消但还未被定时线程移除的任务）
+    public long getScheduledCount() {
+        return scheduled.get();
+    }
+
+    @Override
+    public void shutdown() {
+        // 定时线程在下一个 tick 取消周期任务，没有剩余任务时退出；CAS 避免把并发 shutdownNow() 设置的 STOP 改回 SHUTDOWN
+        STATE.compareAndSet(this, RUNNING, SHUTDOWN);
+    }
+
+    /**
+     * 立即停止定时线程，返回所有尚未触发的任务
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        state = STOP;
+        timerThread.interrupt();
+        try {
+            terminated.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return unprocessed;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private long deadlineAfter(long delay, TimeUnit unit) {
+        return System.nanoTime() - startTime + Math.max(0L, unit.toNanos(delay));
+    }
+
+    private <V> WheelTask<V> add(WheelTask<V> task) {
+        // 先计数再检查状态，保证定时线程不会在任务入队前因为 scheduled == 0 而退出
+        scheduled.incrementAndGet();
+        if (state != RUNNING) {
+            scheduled.decrementAndGet();
+            throw new RejectedExecutionException("timer has been shut down");
+        }
+        pending.add(task);
+        return task;
+    }
+
+    private void runTimer() {
+        boolean periodicCancelled = false;
+        try {
+            while (state != STOP) {
+                if (!waitForNextTick()) {
+                    break;
+                }
+                if (state == SHUTDOWN && !periodicCancelled) {
+                    cancelPeriodic();
+                    periodicCancelled = true;
+                }
+                removeCancelled();
+                transferPending();
+                expire(wheel[(int) (tick & mask)]);
+                tick++;
+                if (state == SHUTDOWN && scheduled.get() == 0) {
+                    break;
+                }
+            }
+        } finally {
+            // 先设置 exited 再清空 pending：正在重新安排的周期任务要么在这里被取到，要么在 run() 中看到 exited 后自行取消
+            exited = true;
+            if (state == STOP) {
+                collectUnprocessed();
+            } else {
+                cancelPending();
+            }
+            terminated.countDown();
+        }
+    }
+
+    // 等待当前 tick 结束，被 shutdownNow() 中断时返回 false
+    private boolean waitForNextTick() {
+        long deadline = tickNanos * (tick + 1);
+        while (true) {
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos <= 0) {
+                return true;
+            }
+            if (state == SHUTDOWN && scheduled.get() == 0) {
+                return true;
+            }
+            try {
+                // 向上取整到毫秒，避免提前醒来后空转
+                Thread.sleep((sleepNanos + 999_999) / 1_000_000);
+            } catch (InterruptedException e) {
+                if (state == STOP) {
+                    return false;
+                }
+            }
+        }
+    }
+
+    private void cancelPeriodic() {
+        for (Bucket bucket : wheel) {
+            for (WheelTask<?> task = bucket.head; task != null; task = task.next) {
+                if (task.isPeriodic()) {
+                    task.cancel(false);
+                }
+            }
+        }
+    }
+
+    private void removeCancelled() {
+        WheelTask<?> task;
+        while ((task = cancelled.poll()) != null) {
+            if (task.bucket != null) {
+                task.bucket.remove(task);
+                scheduled.decrementAndGet();
+            }
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            WheelTask<?> task = pending.poll();
+            if (task == null) {
+                return;
+            }
+            if (task.isPeriodic() && state != RUNNING) {
+                task.cancel(false);
+            }
+            if (task.isCancelled()) {
+                scheduled.decrementAndGet();
+                continue;
+            }
+            long calculated = task.deadline / tickNanos;
+            task.remainingRounds = (calculated - tick) / wheel.length;
+            // 已经过期的任务放到当前格子，本 tick 就会触发
+            Bucket bucket = wheel[(int) (Math.max(calculated, tick) & mask)];
+            bucket.add(task);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        WheelTask<?> task = bucket.head;
+        while (task != null) {
+            WheelTask<?> next = task.next;
+            if (task.isCancelled()) {
+                bucket.remove(task);
+                scheduled.decrementAndGet();
+            } else if (task.remainingRounds <= 0) {
+                bucket.remove(task);
+                scheduled.decrementAndGet();
+                if (task.isPeriodic() && state != RUNNING) {
+                    task.cancel(false);
+                } else {
+                    task.dispatch();
+                }
+            } else {
+                task.remainingRounds--;
+            }
+            task = next;
+        }
+    }
+
+    private void cancelPending() {
+        WheelTask<?> task;
+        while ((task = pending.poll()) != null) {
+            task.cancel(false);
+        }
+    }
+
+    private void collectUnprocessed() {
+        List<Runnable> tasks = new ArrayList<>();
+        for (Bucket bucket : wheel) {
+            for (WheelTask<?> task = bucket.head; task != null; task = task.next) {
+                if (!task.isCancelled()) {
+                    tasks.add(task);
+                }
+            }
+        }
+        WheelTask<?> task;
+        while ((task = pending.poll()) != null) {
+            if (!task.isCancelled()) {
+                tasks.add(task);
+            }
+        }
+        unprocessed = tasks;
+    }
+
+    /**
+     * 时间轮的一个格子，只由定时线程访问
+     */
+    private static final class Bucket {
+        WheelTask<?> head;
+        WheelTask<?> tail;
+
+        void add(WheelTask<?> task) {
+            task.bucket = this;
+            if (head == null) {
+                head = tail = task;
+            } else {
+                tail.next = task;
+                task.prev = tail;
+                tail = task;
+            }
+        }
+
+        void remove(WheelTask<?> task) {
+            if (task.prev != null) {
+                task.prev.next = task.next;
+            } else {
+                head = task.next;
+            }
+            if (task.next != null) {
+                task.next.prev = task.prev;
+            } else {
+                tail = task.prev;
+            }
+            task.prev = task.next = null;
+            task.bucket = null;
+        }
+    }
+
+    private final class WheelTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+        // 相对 startTime 的到期时间
+        private volatile long deadline;
+        // 0: 一次性任务，> 0: scheduleAtFixedRate 的周期，< 0: scheduleWithFixedDelay 的间隔
+        private final long period;
+        // 以下字段只由定时线程访问
+        private long remainingRounds;
+        private Bucket bucket;
+        private WheelTask<?> prev;
+        private WheelTask<?> next;
+
+        WheelTask(Callable<V> callable, long deadline, long period) {
+            super(callable);
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public boolean isPeriodic() {
+            return period != 0;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - (System.nanoTime() - startTime), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            if (other == this) {
+                return 0;
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean result = super.cancel(mayInterruptIfRunning);
+            if (result) {
+                cancelled.add(this);
+            }
+            return result;
+        }
+
+        void dispatch() {
+            try {
+                worker.execute(this);
+            } catch (RejectedExecutionException e) {
+                setException(e);
+            }
+        }
+
+        @Override
+        public void run() {
+            if (!isPeriodic()) {
+                super.run();
+                return;
+            }
+            if (!runAndReset()) {
+                return;
+            }
+            if (state != RUNNING) {
+                cancel(false);
+                return;
+            }
+            deadline = period > 0 ? deadline + period : System.nanoTime() - startTime - period;
+            scheduled.incrementAndGet();
+            pending.add(this);
+            // 定时线程可能已经退出，这次重新安排不会再被处理
+            if (exited) {
+                cancel(false);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ExecutorService worker = Executors.newFixedThreadPool(2);
+        HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 64, worker);
+
+        ScheduledFuture<String> once = timer.schedule(() -> "callable执行", 200, TimeUnit.MILLISECONDS);
+        CountDownLatch lock = new CountDownLatch(3);
+        ScheduledFuture<?> periodic = timer.scheduleAtFixedRate(() -> {
+            System.out.println("Hello World");
+            lock.countDown();
+        }, 500, 100, TimeUnit.MILLISECONDS);
+        System.out.println(once.get());
+        lock.await(1000, TimeUnit.MILLISECONDS);
+        periodic.cancel(false);
+
+        // 设置十万个超时然后全部取消，被取消的任务在下一个 tick 就从时间轮上摘除
+        List<ScheduledFuture<?>> timeouts = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            timeouts.add(timer.schedule(() -> System.out.println("不应该执行"), 30, TimeUnit.SECONDS));
+        }
+        timeouts.forEach(f -> f.cancel(false));
+        Thread.sleep(50);
+        System.out.println("scheduled after cancel: " + timer.getScheduledCount());
+
+        timer.shutdown();
+        System.out.println("terminated: " + timer.awaitTermination(1, TimeUnit.SECONDS));
+        worker.shutdown();
+    }
+}
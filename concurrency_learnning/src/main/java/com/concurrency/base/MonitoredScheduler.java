@@ -0,0 +1,362 @@
+package com.concurrency.base;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 记录周期任务每一次执行情况的调度器包装
+ *
+ * ScheduledExecutorServiceExample 中说明了 scheduleAtFixedRate() 与 scheduleWithFixedDelay() 的区别，但 JDK 不会告诉你：
+ * 1、任务执行时间超过了周期（overrun）
+ * 2、实际开始时间比计划时间晚了多少（lag），例如调度线程被其他任务占用
+ * 3、错过的 tick 是怎么处理的：JDK 的 scheduleAtFixedRate() 会把错过的 tick 背靠背地补跑，形成突发
+ *
+ * 这里的周期任务不交给底层调度器的周期方法，而是每次执行完再用 schedule() 安排下一次，从而可以：
+ * 记录计划时间与实际开始时间之差、执行耗时、错过的 tick 数，并按 CatchUpPolicy 决定错过的 tick 如何处理。
+ * 每次执行只多两次 System.nanoTime() 和几次 LongAdder 累加，可以在生产环境常开。
+ */
+public class MonitoredScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+    /**
+     * 执行时间超过周期、错过 tick 之后的补偿策略（只对固定频率的任务有效）
+     * RUN_ALL:  错过的每个 tick 都补跑一次，背靠背执行直到追上，与 JDK scheduleAtFixedRate() 相同
+     * SKIP:     丢弃错过的 tick，下一次在之后的第一个 tick 执行，保持原有节奏
+     * RUN_ONCE: 错过的 tick 合并成一次，立即执行一次，然后回到原有节奏
+     */
+    public enum CatchUpPolicy {
+        RUN_ALL,
+        SKIP,
+        RUN_ONCE
+    }
+
+    private final ScheduledExecutorService delegate;
+    // 还在运行的周期任务，按任务名索引；任务被取消或抛出异常后移除，名字可以重新使用
+    private final Map<String, PeriodicTask> tasks = new ConcurrentHashMap<>();
+    private final AtomicInteger taskIds = new AtomicInteger();
+
+    public MonitoredScheduler(ScheduledExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return scheduleAtFixedRate("task-" + taskIds.incrementAndGet(), command, initialDelay, period, unit,
+                CatchUpPolicy.RUN_ALL);
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return scheduleWithFixedDelay("task-" + taskIds.incrementAndGet(), command, initialDelay, delay, unit);
+    }
+
+    public PeriodicTask scheduleAtFixedRate(String name, Runnable command, long initialDelay, long period,
+                                            TimeUnit unit, CatchUpPolicy policy) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be > 0");
+        }
+        return start(new PeriodicTask(name, command, unit.toNanos(period), false, policy), initialDelay, unit);
+    }
+
+    public PeriodicTask scheduleWithFixedDelay(String name, Runnable command, long initialDelay, long delay,
+                                               TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("delay must be > 0");
+        }
+        return start(new PeriodicTask(name, command, unit.toNanos(delay), true, CatchUpPolicy.RUN_ALL),
+                initialDelay, unit);
+    }
+
+    // 还在运行的周期任务的统计，不存在或已经结束时返回 null；结束之后的统计通过 PeriodicTask.getStats() 获取
+    public PeriodicStats getStats(String name) {
+        PeriodicTask task = tasks.get(name);
+        return task == null ? null : task.stats;
+    }
+
+    // 所有还在运行的周期任务的统计快照，按任务名索引
+    public Map<String, PeriodicStats> getAllStats() {
+        Map<String, PeriodicStats> result = new LinkedHashMap<>();
+        tasks.forEach((name, task) -> result.put(name, task.stats));
+        return result;
+    }
+
+    private PeriodicTask start(PeriodicTask task, long initialDelay, TimeUnit unit) {
+        if (tasks.putIfAbsent(task.name, task) != null) {
+            throw new IllegalArgumentException("duplicate task name: " + task.name);
+        }
+        // 取消或失败后移除，自动命名的 task-N 不会无限累积
+        task.completion.whenComplete((v, t) -> tasks.remove(task.name, task));
+        task.scheduleAt(System.nanoTime() + unit.toNanos(Math.max(0L, initialDelay)));
+        return task;
+    }
+
+    // 周期任务的每一次执行都是底层调度器上的一次性任务，而 ScheduledThreadPoolExecutor 关闭后仍会执行已经安排的一次性任务，
+    // 所以关闭前先取消所有周期任务，否则会多执行一次，并且要等一个周期才能终止
+    private void cancelPeriodicTasks() {
+        for (PeriodicTask task : new ArrayList<>(tasks.values())) {
+            task.cancel(false);
+        }
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return delegate.schedule(command, delay, unit);
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return delegate.schedule(callable, delay, unit);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        delegate.execute(command);
+    }
+
+    @Override
+    public void shutdown() {
+        cancelPeriodicTasks();
+        delegate.shutdown();
+        // 与取消并发的执行可能刚刚在关闭前安排了下一次并随即取消，已取消的任务留在队列中同样会拖住终止
+        if (delegate instanceof ThreadPoolExecutor) {
+            ((ThreadPoolExecutor) delegate).purge();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        cancelPeriodicTasks();
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * 一个周期任务的统计
+     */
+    public static class PeriodicStats {
+        // 实际开始时间 - 计划时间
+        private final LatencyHistogram startLag = new LatencyHistogram();
+        private final LatencyHistogram runTime = new LatencyHistogram();
+        private final LongAdder executions = new LongAdder();
+        // 执行时间超过周期的次数
+        private final LongAdder overruns = new LongAdder();
+        // 因 SKIP 被丢弃的 tick
+        private final LongAdder skippedTicks = new LongAdder();
+        // 因 RUN_ONCE 被合并掉的 tick
+        private final LongAdder coalescedTicks = new LongAdder();
+        // 因 RUN_ALL 补跑的次数，即开始时已经晚于下一个 tick 的执行
+        private final LongAdder catchUpRuns = new LongAdder();
+
+        public LatencyHistogram getStartLag() {
+            return startLag;
+        }
+
+        public LatencyHistogram getRunTime() {
+            return runTime;
+        }
+
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        public long getOverruns() {
+            return overruns.sum();
+        }
+
+        public long getSkippedTicks() {
+            return skippedTicks.sum();
+        }
+
+        public long getCoalescedTicks() {
+            return coalescedTicks.sum();
+        }
+
+        public long getCatchUpRuns() {
+            return catchUpRuns.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "executions=" + getExecutions()
+                    + ", overruns=" + getOverruns()
+                    + ", skipped=" + getSkippedTicks()
+                    + ", coalesced=" + getCoalescedTicks()
+                    + ", catchUpRuns=" + getCatchUpRuns()
+                    + ", startLag=[" + startLag + "]"
+                    + ", runTime=[" + runTime + "]";
+        }
+    }
+
+    /**
+     * 周期任务的句柄，与 JDK 一样：任务抛出异常后不再执行，get() 抛出 ExecutionException；被取消后 get() 抛出 CancellationException
+     */
+    public final class PeriodicTask implements ScheduledFuture<Void>, Runnable {
+        private final String name;
+        private final Runnable command;
+        private final long periodNanos;
+        private final boolean fixedDelay;
+        private final CatchUpPolicy policy;
+        private final PeriodicStats stats;
+        // 周期任务只会以取消或异常结束
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        private volatile ScheduledFuture<?> current;
+        // 本次执行的计划时间（System.nanoTime()），只在执行线程中读写，相邻两次执行之间由 schedule() 保证可见性
+        private long scheduledAt;
+
+        PeriodicTask(String name, Runnable command, long periodNanos, boolean fixedDelay, CatchUpPolicy policy) {
+            this.name = name;
+            this.command = command;
+            this.periodNanos = periodNanos;
+            this.fixedDelay = fixedDelay;
+            this.policy = policy;
+            this.stats = new PeriodicStats();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public PeriodicStats getStats() {
+            return stats;
+        }
+
+        @Override
+        public void run() {
+            if (completion.isDone()) {
+                return;
+            }
+            long start = System.nanoTime();
+            long lag = start - scheduledAt;
+            stats.startLag.record(lag);
+            if (!fixedDelay && lag >= periodNanos) {
+                stats.catchUpRuns.increment();
+            }
+            try {
+                command.run();
+            } catch (Throwable t) {
+                completion.completeExceptionally(t);
+                return;
+            } finally {
+                long end = System.nanoTime();
+                stats.executions.increment();
+                stats.runTime.record(end - start);
+                if (end - start > periodNanos) {
+                    stats.overruns.increment();
+                }
+            }
+            long now = System.nanoTime();
+            scheduleAt(fixedDelay ? now + periodNanos : nextTick(now));
+        }
+
+        // 固定频率下一次执行的计划时间
+        private long nextTick(long now) {
+            long next = scheduledAt + periodNanos;
+            if (policy == CatchUpPolicy.RUN_ALL || next - now > 0) {
+                return next;
+            }
+            // 已经错过的 tick 数（包含 next 本身）
+            long missed = (now - next) / periodNanos + 1;
+            if (policy == CatchUpPolicy.SKIP) {
+                stats.skippedTicks.add(missed);
+                return next + missed * periodNanos;
+            }
+            // RUN_ONCE: 以最近一个错过的 tick 作为计划时间立即执行，其余的合并掉
+            stats.coalescedTicks.add(missed - 1);
+            return next + (missed - 1) * periodNanos;
+        }
+
+        void scheduleAt(long time) {
+            scheduledAt = time;
+            try {
+                current = delegate.schedule(this, time - System.nanoTime(), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // 底层调度器已经关闭，与 JDK 一样周期任务就此结束
+                completion.cancel(false);
+                return;
+            }
+            if (completion.isCancelled()) {
+                current.cancel(false);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean result = completion.cancel(mayInterruptIfRunning);
+            ScheduledFuture<?> scheduled = current;
+            if (scheduled != null) {
+                scheduled.cancel(mayInterruptIfRunning);
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return completion.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return completion.isDone();
+        }
+
+        @Override
+        public Void get() throws InterruptedException, ExecutionException {
+            return completion.get();
+        }
+
+        @Override
+        public Void get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+                TimeoutException {
+            return completion.get(timeout, unit);
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(scheduledAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        MonitoredScheduler scheduler = new MonitoredScheduler(Executors.newScheduledThreadPool(3));
+        // 100 毫秒的心跳，每 5 次有一次耗时 350 毫秒，错过 3 个 tick
+        List<PeriodicTask> heartbeats = new ArrayList<>();
+        for (CatchUpPolicy policy : CatchUpPolicy.values()) {
+            AtomicInteger count = new AtomicInteger();
+            heartbeats.add(scheduler.scheduleAtFixedRate("heartbeat-" + policy, () -> {
+                try {
+                    Thread.sleep(count.incrementAndGet() % 5 == 0 ? 350 : 5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, 0, 100, TimeUnit.MILLISECONDS, policy));
+        }
+        Thread.sleep(3000);
+        scheduler.getAllStats().forEach((name, s) -> System.out.println(name + ": " + s));
+        scheduler.shutdown();
+        System.out.println("terminated: " + scheduler.awaitTermination(50, TimeUnit.MILLISECONDS)
+                + ", running tasks: " + scheduler.getAllStats().size()
+                + ", cancelled: " + heartbeats.get(0).isCancelled());
+    }
+}
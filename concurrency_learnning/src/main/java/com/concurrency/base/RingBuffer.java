@@ -0,0 +1,332 @@
+package com.concurrency.base;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 预先分配、无锁的有界环形缓冲区，用于生产者到消费者线程的高频交接
+ *
+ * ThreadPoolExecutor 的 ArrayBlockingQueue / LinkedBlockingQueue 每次入队、出队都要加锁，并通过 Condition 唤醒等待的线程，
+ * 交接频率很高时锁竞争和 signal 本身就是开销的主要部分。这里（每个槽位一个序号，即 Vyukov 的有界 MPMC 队列）：
+ * 1、槽位数组在创建时一次性分配，容量为 2 的幂，用位与代替取模；入队和出队都只是一次 CAS 加上对槽位序号的读写
+ * 2、ProducerType.SINGLE 只允许一个线程生产，入队不需要 CAS；MULTI 允许多个生产者，通过 CAS 抢占槽位
+ * 3、消费者可以有多个，drain() 一次 CAS 取走最多 maxBatch 个连续就绪的元素，批量消费时每个元素分摊的 CAS 更少
+ * 4、缓冲区为空时消费者按 WaitStrategy 等待，满时生产者的 put() 同样自旋、让出或短暂 park
+ *
+ * 槽位序号 seq 的含义：seq == pos 表示第 pos 个位置可以写入，seq == pos + 1 表示已经写入、可以读取，
+ * 读取后设为 pos + capacity，即下一圈的同一个位置可以写入。
+ */
+public class RingBuffer<E> {
+    /**
+     * SINGLE: 只有一个线程调用 offer() / put()，由调用方保证
+     * MULTI:  任意多个线程同时生产
+     */
+    public enum ProducerType {
+        SINGLE,
+        MULTI
+    }
+
+    /**
+     * 消费者等待新元素的方式，从左到右延迟变大、CPU 占用变小
+     * BUSY_SPIN: 一直自旋，延迟最低，每个等待的消费者占满一个核，适合消费者数不超过空闲核数的场景
+     * YIELD:     自旋一段时间后 Thread.yield()，让出 CPU 但仍在运行队列中
+     * PARK:      自旋一段时间后 park，生产者发布元素时 unpark 一个等待的消费者，空闲时几乎不占 CPU
+     */
+    public enum WaitStrategy {
+        BUSY_SPIN,
+        YIELD,
+        PARK
+    }
+
+    // 进入 yield / park 之前的自旋次数
+    private static final int SPIN_TRIES = 100;
+    // 生产者在缓冲区满时每次 park 的时长
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    // head 和 tail 放在同一个 AtomicLongArray 中相隔 128 字节的位置，避免生产者和消费者互相使对方的缓存行失效
+    private static final int TAIL = 15;
+    private static final int HEAD = 31;
+
+    private final Object[] slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLongArray cursors = new AtomicLongArray(HEAD + 16);
+    private final int mask;
+    private final ProducerType producerType;
+    private final WaitStrategy waitStrategy;
+    // PARK 策略下正在等待的消费者
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param capacity 会向上取整为 2 的幂
+     */
+    public RingBuffer(int capacity, ProducerType producerType, WaitStrategy waitStrategy) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be in (0, 2^30]");
+        }
+        int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+        this.mask = size - 1;
+        this.producerType = producerType;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * 放入一个元素，缓冲区满时立即返回 false
+     */
+    public boolean offer(E element) {
+        if (element == null) {
+            throw new NullPointerException();
+        }
+        long pos = cursors.get(TAIL);
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff < 0) {
+                return false;
+            }
+            if (diff == 0) {
+                if (producerType == ProducerType.SINGLE) {
+                    cursors.lazySet(TAIL, pos + 1);
+                    break;
+                }
+                if (cursors.compareAndSet(TAIL, pos, pos + 1)) {
+                    break;
+                }
+            }
+            // 槽位已被其他生产者抢占
+            pos = cursors.get(TAIL);
+        }
+        int index = (int) pos & mask;
+        slots[index] = element;
+        publish(index, pos + 1);
+        return true;
+    }
+
+    /**
+     * 放入一个元素，缓冲区满时按等待策略自旋或短暂 park，直到有空位
+     */
+    public void put(E element) throws InterruptedException {
+        int tries = 0;
+        while (!offer(element)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            tries = backoff(tries, PRODUCER_PARK_NANOS);
+        }
+    }
+
+    /**
+     * 取出一个元素，缓冲区为空时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long pos = cursors.get(HEAD);
+        while (true) {
+            int index = (int) pos & mask;
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff < 0) {
+                return null;
+            }
+            if (diff == 0 && cursors.compareAndSet(HEAD, pos, pos + 1)) {
+                E element = (E) slots[index];
+                slots[index] = null;
+                sequences.lazySet(index, pos + mask + 1);
+                return element;
+            }
+            pos = cursors.get(HEAD);
+        }
+    }
+
+    /**
+     * 一次取走最多 maxBatch 个连续就绪的元素，依次交给 handler，返回处理的个数；为空时立即返回 0
+     * 槽位在交给 handler 之前就已释放，handler 执行期间生产者可以继续写入
+     */
+    @SuppressWarnings("unchecked")
+    public int drain(Consumer<? super E> handler, int maxBatch) {
+        long pos;
+        int count;
+        while (true) {
+            pos = cursors.get(HEAD);
+            count = 0;
+            while (count < maxBatch && sequences.get((int) (pos + count) & mask) == pos + count + 1) {
+                count++;
+            }
+            if (count == 0) {
+                if (pos == cursors.get(HEAD)) {
+                    return 0;
+                }
+                continue;
+            }
+            if (cursors.compareAndSet(HEAD, pos, pos + count)) {
+                break;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int index = (int) (pos + i) & mask;
+            E element = (E) slots[index];
+            slots[index] = null;
+            sequences.lazySet(index, pos + i + mask + 1);
+            handler.accept(element);
+        }
+        return count;
+    }
+
+    /**
+     * 取出一个元素，为空时按等待策略等待
+     */
+    public E take() throws InterruptedException {
+        E element;
+        while ((element = poll()) == null) {
+            awaitNotEmpty(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+        return element;
+    }
+
+    /**
+     * 按等待策略等待缓冲区非空，返回是否非空；超时、被 wakeUpConsumers() 唤醒时也会返回
+     */
+    public boolean awaitNotEmpty(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        int tries = 0;
+        while (isEmpty()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            if (waitStrategy != WaitStrategy.PARK || tries < SPIN_TRIES) {
+                tries = backoff(tries, remaining);
+                continue;
+            }
+            // 先登记再检查，生产者要么在 publish() 之后取出这里登记的线程并唤醒它，要么元素在这里被看到
+            Thread current = Thread.currentThread();
+            waiters.offer(current);
+            try {
+                if (!isEmpty()) {
+                    return true;
+                }
+                LockSupport.parkNanos(this, remaining);
+                // park 可能被 wakeUpConsumers() 或伪唤醒打断，交给调用方重新检查状态
+                return !isEmpty();
+            } finally {
+                waiters.remove(current);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 唤醒所有在 awaitNotEmpty() 中 park 的消费者，例如关闭时让它们检查关闭状态
+     */
+    public void wakeUpConsumers() {
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    public boolean isEmpty() {
+        long head = cursors.get(HEAD);
+        return sequences.get((int) head & mask) != head + 1;
+    }
+
+    // 近似值，并发修改时可能不准确
+    public int size() {
+        long size = cursors.get(TAIL) - cursors.get(HEAD);
+        return (int) Math.max(0, Math.min(size, slots.length));
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    private void publish(int index, long sequence) {
+        if (waitStrategy == WaitStrategy.PARK) {
+            // volatile 写之后再读 waiters，与 awaitNotEmpty() 中的"先登记再检查"配合，不会丢失唤醒
+            sequences.set(index, sequence);
+            Thread waiter = waiters.poll();
+            if (waiter != null) {
+                LockSupport.unpark(waiter);
+            }
+        } else {
+            sequences.lazySet(index, sequence);
+        }
+    }
+
+    private int backoff(int tries, long maxParkNanos) {
+        if (tries < SPIN_TRIES || waitStrategy == WaitStrategy.BUSY_SPIN) {
+            return tries + 1;
+        }
+        if (waitStrategy == WaitStrategy.YIELD) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(this, Math.min(maxParkNanos, PRODUCER_PARK_NANOS));
+        }
+        return tries;
+    }
+
+    /**
+     * 单生产者、单消费者交接一千万个元素，比较三种等待策略与 ArrayBlockingQueue 的耗时
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int count = 10_000_000;
+        for (WaitStrategy strategy : WaitStrategy.values()) {
+            // 只有一个核时自旋的消费者会和生产者抢同一个核，每次都要等到时间片用完
+            if (strategy == WaitStrategy.BUSY_SPIN && Runtime.getRuntime().availableProcessors() < 2) {
+                System.out.println("ringBuffer(BUSY_SPIN): skipped on a single core");
+                continue;
+            }
+            RingBuffer<Integer> ring = new RingBuffer<>(1024, ProducerType.SINGLE, strategy);
+            long start = System.nanoTime();
+            Thread consumer = new Thread(() -> {
+                int received = 0;
+                try {
+                    while (received < count) {
+                        int n = ring.drain(v -> { }, 256);
+                        if (n == 0) {
+                            ring.awaitNotEmpty(1, TimeUnit.SECONDS);
+                        }
+                        received += n;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            consumer.start();
+            Integer item = 1;
+            for (int i = 0; i < count; i++) {
+                ring.put(item);
+            }
+            consumer.join();
+            System.out.println("ringBuffer(" + strategy + "): " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        }
+
+        ArrayBlockingQueue<Integer> queue = new ArrayBlockingQueue<>(1024);
+        long start = System.nanoTime();
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int i = 0; i < count; i++) {
+                    queue.take();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        Integer item = 1;
+        for (int i = 0; i < count; i++) {
+            queue.put(item);
+        }
+        consumer.join();
+        System.out.println("arrayBlockingQueue: " + (System.nanoTime() - start) / 1_000_000 + "ms");
+    }
+}
@@ -0,0 +1,254 @@
+package com.concurrency.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 以 RingBuffer 作为任务来源的固定大小线程池，替代 ThreadPoolExample 中 ThreadPoolExecutor 的阻塞队列
+ *
+ * 提交任务是一次无锁入队（单生产者时连 CAS 都没有），工作线程每次从环形缓冲区批量取走最多 batchSize 个任务依次执行，
+ * 空闲时按 WaitStrategy 等待。缓冲区满时 execute() 按等待策略等待空位，对提交方形成背压。
+ *
+ * 与 ThreadPoolExecutor 的区别：线程数固定，没有过载策略，也不能从队列中移除已提交的任务。
+ * 工作线程取走的一批任务先放在自己的数组中逐个执行，shutdownNow() 之后尚未开始的任务与缓冲区中的任务一起返回。
+ * ProducerType.SINGLE 只能由一个线程提交任务（例如事件分发线程），submit() / invokeAll() 同样计入。
+ */
+public class RingBufferExecutor extends AbstractExecutorService {
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+    private static final AtomicIntegerFieldUpdater<RingBufferExecutor> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(RingBufferExecutor.class, "state");
+    // 空闲的工作线程每次等待的最长时间，之后重新检查关闭状态
+    private static final long IDLE_WAIT_MILLIS = 100;
+
+    private final RingBuffer<Runnable> ring;
+    private final Worker[] workers;
+    private final int batchSize;
+    private final CountDownLatch terminated;
+    // 已通过状态检查、尚未完成入队的 execute() 调用数，关闭时工作线程要等它们入队后把任务执行完
+    private final AtomicInteger submitting = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private volatile int state = RUNNING;
+
+    public RingBufferExecutor(int threads, int capacity, RingBuffer.ProducerType producerType,
+                              RingBuffer.WaitStrategy waitStrategy, int batchSize) {
+        this(threads, capacity, producerType, waitStrategy, batchSize, Executors.defaultThreadFactory());
+    }
+
+    public RingBufferExecutor(int threads, int capacity, RingBuffer.ProducerType producerType,
+                              RingBuffer.WaitStrategy waitStrategy, int batchSize, ThreadFactory threadFactory) {
+        if (threads <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("threads and batchSize must be > 0");
+        }
+        this.ring = new RingBuffer<>(capacity, producerType, waitStrategy);
+        this.batchSize = batchSize;
+        this.workers = new Worker[threads];
+        this.terminated = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            workers[i] = new Worker(threadFactory);
+        }
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        submitting.incrementAndGet();
+        try {
+            if (state != RUNNING) {
+                throw new RejectedExecutionException("executor has been shut down");
+            }
+            ring.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("interrupted while waiting for a free slot", e);
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    public int getQueueSize() {
+        return ring.size();
+    }
+
+    public long getCompletedTaskCount() {
+        return completed.sum();
+    }
+
+    private final class Worker implements Runnable {
+        private final Thread thread;
+        // 本次取走、尚未开始执行的任务，shutdownNow() 可以通过 getAndSet() 把它们取走
+        private final AtomicReferenceArray<Runnable> batch = new AtomicReferenceArray<>(batchSize);
+        // 正在从缓冲区领取任务；与 state 配合，shutdownNow() 设置 STOP 之后等它变为 false，就不会漏掉刚领取的任务
+        private volatile boolean claiming;
+        private int claimed;
+
+        Worker(ThreadFactory threadFactory) {
+            this.thread = threadFactory.newThread(this);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    claiming = true;
+                    if (state == STOP) {
+                        claiming = false;
+                        break;
+                    }
+                    claimed = 0;
+                    int count = ring.drain(this::hold, batchSize);
+                    claiming = false;
+                    if (count > 0) {
+                        runBatch(count);
+                        continue;
+                    }
+                    // 关闭后要等进行中的提交全部入队、缓冲区清空才退出，保证已接受的任务都会执行
+                    if (state == SHUTDOWN && submitting.get() == 0 && ring.isEmpty()) {
+                        break;
+                    }
+                    try {
+                        ring.awaitNotEmpty(IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        // shutdownNow() 的中断，回到循环检查状态
+                    }
+                }
+            } finally {
+                terminated.countDown();
+            }
+        }
+
+        private void hold(Runnable task) {
+            batch.lazySet(claimed++, task);
+        }
+
+        // 每个任务开始前检查状态，STOP 之后剩下的任务留给 shutdownNow()
+        private void runBatch(int count) {
+            int ran = 0;
+            for (int i = 0; i < count && state != STOP; i++) {
+                Runnable task = batch.getAndSet(i, null);
+                if (task == null) {
+                    break;
+                }
+                RingBufferExecutor.this.run(thread, task);
+                ran++;
+            }
+            completed.add(ran);
+        }
+
+        // shutdownNow() 调用：取走尚未开始的任务
+        void takeUnstarted(List<Runnable> tasks) {
+            while (claiming) {
+                Thread.yield();
+            }
+            for (int i = 0; i < batch.length(); i++) {
+                Runnable task = batch.getAndSet(i, null);
+                if (task != null) {
+                    tasks.add(task);
+                }
+            }
+        }
+    }
+
+    private void run(Thread current, Runnable task) {
+        try {
+            task.run();
+        } catch (Throwable t) {
+            current.getUncaughtExceptionHandler().uncaughtException(current, t);
+        }
+        // 清除任务遗留的中断标记，shutdownNow() 除外
+        if (state != STOP) {
+            Thread.interrupted();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        // CAS 避免把并发 shutdownNow() 设置的 STOP 改回 SHUTDOWN
+        STATE.compareAndSet(this, RUNNING, SHUTDOWN);
+        ring.wakeUpConsumers();
+    }
+
+    /**
+     * 中断所有工作线程，返回尚未执行的任务：工作线程已取走但没有开始的，以及缓冲区中的
+     * 已通过状态检查、还在入队的 execute() 会被等待到入队完成（缓冲区满时这里的清空会为它们腾出位置），它们的任务同样返回
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        state = STOP;
+        List<Runnable> tasks = new ArrayList<>();
+        for (Worker worker : workers) {
+            worker.thread.interrupt();
+        }
+        for (Worker worker : workers) {
+            worker.takeUnstarted(tasks);
+        }
+        while (true) {
+            boolean settled = submitting.get() == 0;
+            Runnable task;
+            while ((task = ring.poll()) != null) {
+                tasks.add(task);
+            }
+            if (settled) {
+                return tasks;
+            }
+            Thread.yield();
+        }
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * 一个事件分发线程向 4 个工作线程提交两百万个短任务，与同样线程数、同样容量的 ThreadPoolExample 对比
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int tasks = 2_000_000;
+        for (RingBuffer.WaitStrategy strategy : new RingBuffer.WaitStrategy[]{
+                RingBuffer.WaitStrategy.YIELD, RingBuffer.WaitStrategy.PARK}) {
+            RingBufferExecutor executor = new RingBufferExecutor(4, 1024, RingBuffer.ProducerType.SINGLE, strategy, 64);
+            LongAdder done = new LongAdder();
+            long start = System.nanoTime();
+            for (int i = 0; i < tasks; i++) {
+                executor.execute(done::increment);
+            }
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+            System.out.println("ringBufferExecutor(" + strategy + "): " + done.sum() + " tasks in "
+                    + (System.nanoTime() - start) / 1_000_000 + "ms");
+        }
+
+        ThreadPoolExample pool = new ThreadPoolExample(4, 1024, ThreadPoolExample.OverloadPolicy.CALLER_RUNS);
+        LongAdder done = new LongAdder();
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            pool.execute(done::increment);
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        System.out.println("threadPoolExample: " + done.sum() + " tasks in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms, callerRuns: " + pool.getCallerRunsCount());
+    }
+}
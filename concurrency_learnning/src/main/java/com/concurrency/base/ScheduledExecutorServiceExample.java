@@ -8,6 +8,9 @@ import java.util.concurrent.*;
  * schedule() 方法允许在指定的延迟后执行一次任务
  * scheduleAtFixedRate() 方法允许在指定的初始延迟后执行任务，然后以一定的周期重复执行，其中 period 参数用于指定两个任务的开始时间之间的间隔时间，因此任务执行的频率是固定的。
  * scheduleWithFixedDelay() 方法类似于 scheduleAtFixedRate() ，它也重复执行给定的任务，但period 参数用于指定前一个任务的结束和下一个任务的开始之间的间隔时间。也就是指定下一个任务延时多久后才执行。执行频率可能会有所不同，具体取决于执行任何给定任务所需的时间。
+ *
+ * 大量设置后又被取消的超时任务（如请求超时）可以使用 HashedWheelTimer，它实现了同样的接口，插入和取消都是 O(1)
+ * 需要知道周期任务是否超时运行、开始时间漂移了多少、错过的 tick 如何处理时，可以用 MonitoredScheduler 包装
  */
 public class ScheduledExecutorServiceExample {
     public static void main(String[] args) throws InterruptedException {
@@ -2,6 +2,8 @@ package com.concurrency.base;
 
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * Executors、Executor 和 ExecutorService
@@ -19,17 +21,76 @@ import java.util.concurrent.atomic.AtomicInteger;
  * Executors.newCachedThreadPool()：缓存线程池，该方法创建的线程池没有任何核心线程，因为它将 corePoolSize 属性设置为 0，但同时有可以创建最大数量的额外线程，因为它将 maximumPoolSize 设置为 Integer.MAX_VALUE，
  *                                  且将 keepAliveTime 的值设置为 60 秒。这些参数值意味着缓存的线程池可以无限制地增长以容纳任何数量的已提交任务。但是，当不再需要线程时，它们将在 60秒不活动后被销毁。
  */
-public class ThreadPoolExample {
+public class ThreadPoolExample implements Executor {
+    /**
+     * 队列满（且线程数已到上限）时的过载策略
+     * CALLER_RUNS: 由提交任务的线程自己执行，天然地减慢生产者的速度
+     * BLOCK_WITH_TIMEOUT: 提交线程最多阻塞等待 blockTimeout，仍然没有空位则拒绝
+     * DROP_OLDEST: 丢弃队列中最老的任务（对应的 Future 被取消），为新任务腾出位置；队列为空时（queueCapacity 为 0）直接拒绝新任务。
+     *              通过 execute() 提交的任务没有 Future，被丢弃时只计入 rejected，提交方不会得到任何通知
+     * REJECT_WITH_METRICS: 直接抛出 RejectedExecutionException，并在异常信息中附带当前指标
+     */
+    public enum OverloadPolicy {
+        CALLER_RUNS,
+        BLOCK_WITH_TIMEOUT,
+        DROP_OLDEST,
+        REJECT_WITH_METRICS
+    }
+
+    private static final long DEFAULT_BLOCK_TIMEOUT_MILLIS = 1000;
+
     private ThreadPoolExecutor executor;
     private int poolSize;
+    private final OverloadPolicy overloadPolicy;
+    private AdaptivePoolSizer adaptivePoolSizer;
+
+    // 实时计数器，LongAdder 在高并发提交时竞争更小
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+    // 任务在队列中的等待时间、任务本身的执行时间
+    private final LatencyHistogram queueWaitTime = new LatencyHistogram();
+    private final LatencyHistogram runTime = new LatencyHistogram();
 
     public ThreadPoolExample(int poolSize, int queueCapacity) {
+        this(poolSize, queueCapacity, OverloadPolicy.REJECT_WITH_METRICS);
+    }
+
+    public ThreadPoolExample(int poolSize, int queueCapacity, OverloadPolicy overloadPolicy) {
+        this(poolSize, queueCapacity, overloadPolicy, DEFAULT_BLOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 使用有界队列创建固定大小的线程池，突发流量下积压的任务数量不会超过 queueCapacity，超出部分按 overloadPolicy 处理
+     * queueCapacity 为 0 时使用 SynchronousQueue，即不缓冲任何任务
+     */
+    public ThreadPoolExample(int poolSize, int queueCapacity, OverloadPolicy overloadPolicy,
+                             long blockTimeout, TimeUnit unit) {
+        if (poolSize <= 0 || queueCapacity < 0) {
+            throw new IllegalArgumentException("poolSize must be > 0 and queueCapacity must be >= 0");
+        }
         this.poolSize = poolSize;
-        this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(poolSize); //固定线程池
+        this.overloadPolicy = overloadPolicy;
+        BlockingQueue<Runnable> workQueue = queueCapacity > 0
+                ? new ArrayBlockingQueue<>(queueCapacity)
+                : new SynchronousQueue<>();
+        // 与 Executors.newFixedThreadPool() 相同的参数，只是把无界的 LinkedBlockingQueue 换成了有界队列
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS, workQueue,
+                Executors.defaultThreadFactory(), rejectionHandler(overloadPolicy, unit.toNanos(blockTimeout)));
         //this.executor = (ThreadPoolExecutor) Executors.newCachedThreadPool(); //缓存线程池
     }
+
     public void submitTask(Runnable task) throws InterruptedException {
-        this.executor.submit(task);
+        this.submitted.increment();
+        this.executor.submit(new TimedTask(task));
+    }
+
+    // 作为普通 Executor 使用（例如 CompletableFuture.supplyAsync(supplier, pool)），同样受队列容量和过载策略约束
+    @Override
+    public void execute(Runnable task) {
+        this.submitted.increment();
+        this.executor.execute(new TimedTask(task));
     }
     // 当前在线程池中活跃的线程数量
     public int getPoolSize() {
@@ -39,10 +100,189 @@ public class ThreadPoolExample {
     public int getQueueSize() {
         return this.executor.getQueue().size();
     }
+    // 已提交的任务数（包含随后被拒绝或丢弃的任务）
+    public long getSubmittedCount() {
+        return this.submitted.sum();
+    }
+    // 已执行完成的任务数（包含由提交线程执行的任务）
+    public long getCompletedCount() {
+        return this.completed.sum();
+    }
+    // 被拒绝或被丢弃的任务数
+    public long getRejectedCount() {
+        return this.rejected.sum();
+    }
+    // 因过载而由提交线程自己执行的任务数
+    public long getCallerRunsCount() {
+        return this.callerRuns.sum();
+    }
+
+    public LatencyHistogram getQueueWaitTime() {
+        return this.queueWaitTime;
+    }
+
+    public LatencyHistogram getRunTime() {
+        return this.runTime;
+    }
+
+    // 当前的核心线程数，自适应模式下会随负载变化
+    public int getCorePoolSize() {
+        return this.executor.getCorePoolSize();
+    }
+    // 正在执行任务的线程数
+    public int getActiveCount() {
+        return this.executor.getActiveCount();
+    }
 
-    public void shutdown() {
+    /**
+     * 调整固定线程池的大小，核心线程数与最大线程数始终保持一致
+     * 扩容时要先调大 maximumPoolSize，缩容时要先调小 corePoolSize，否则会因为 core > max 抛出 IllegalArgumentException
+     */
+    public synchronized void setPoolSize(int poolSize) {
+        if (poolSize > this.executor.getMaximumPoolSize()) {
+            this.executor.setMaximumPoolSize(poolSize);
+            this.executor.setCorePoolSize(poolSize);
+        } else {
+            this.executor.setCorePoolSize(poolSize);
+            this.executor.setMaximumPoolSize(poolSize);
+        }
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * 开启自适应模式：每隔 samplePeriod 采样一次，在 [minPoolSize, maxPoolSize] 之间调整线程数，使排队时间接近 targetQueueWait
+     * 每次调整都会打印到控制台
+     */
+    public AdaptivePoolSizer startAdaptiveSizing(int minPoolSize, int maxPoolSize, long targetQueueWait,
+                                                 long samplePeriod, TimeUnit unit) {
+        return startAdaptiveSizing(minPoolSize, maxPoolSize, targetQueueWait, samplePeriod, unit,
+                decision -> System.out.println("自适应调整: " + decision));
+    }
+
+    public synchronized AdaptivePoolSizer startAdaptiveSizing(int minPoolSize, int maxPoolSize, long targetQueueWait,
+                                                              long samplePeriod, TimeUnit unit,
+                                                              Consumer<AdaptivePoolSizer.ResizeDecision> listener) {
+        if (this.adaptivePoolSizer != null) {
+            throw new IllegalStateException("adaptive sizing already started");
+        }
+        setPoolSize(Math.max(minPoolSize, Math.min(maxPoolSize, this.poolSize)));
+        this.adaptivePoolSizer = new AdaptivePoolSizer(this, minPoolSize, maxPoolSize, targetQueueWait, unit, listener);
+        this.adaptivePoolSizer.start(samplePeriod, unit);
+        return this.adaptivePoolSizer;
+    }
+
+    public OverloadPolicy getOverloadPolicy() {
+        return this.overloadPolicy;
+    }
+
+    public String getMetrics() {
+        return "poolSize=" + getPoolSize()
+                + ", queueSize=" + getQueueSize()
+                + ", submitted=" + getSubmittedCount()
+                + ", completed=" + getCompletedCount()
+                + ", rejected=" + getRejectedCount()
+                + ", callerRuns=" + getCallerRunsCount()
+                + ", queueWait=[" + queueWaitTime + "]"
+                + ", runTime=[" + runTime + "]";
+    }
+
+    public synchronized void shutdown() {
+        if (this.adaptivePoolSizer != null) {
+            this.adaptivePoolSizer.stop();
+        }
         this.executor.shutdown();
     }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.executor.awaitTermination(timeout, unit);
+    }
+
+    private RejectedExecutionHandler rejectionHandler(OverloadPolicy policy, long blockTimeoutNanos) {
+        switch (policy) {
+            case CALLER_RUNS:
+                return (r, e) -> {
+                    if (e.isShutdown()) {
+                        reject(r, e);
+                        return;
+                    }
+                    callerRuns.increment();
+                    r.run();
+                };
+            case BLOCK_WITH_TIMEOUT:
+                return (r, e) -> {
+                    if (e.isShutdown()) {
+                        reject(r, e);
+                        return;
+                    }
+                    try {
+                        if (!e.getQueue().offer(r, blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                            reject(r, e);
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        reject(r, e);
+                    }
+                    // 阻塞期间线程池可能已经关闭，此时任务不会再被执行
+                    if (e.isShutdown() && e.remove(r)) {
+                        reject(r, e);
+                    }
+                };
+            case DROP_OLDEST:
+                return (r, e) -> {
+                    if (e.isShutdown()) {
+                        reject(r, e);
+                        return;
+                    }
+                    Runnable oldest = e.getQueue().poll();
+                    // 队列为空（例如 queueCapacity 为 0 的 SynchronousQueue）时没有可以丢弃的任务，
+                    // 再次 execute() 只会重新进入这里，直接拒绝
+                    if (oldest == null) {
+                        reject(r, e);
+                        return;
+                    }
+                    rejected.increment();
+                    if (oldest instanceof Future) {
+                        ((Future<?>) oldest).cancel(false);
+                    }
+                    e.execute(r);
+                };
+            case REJECT_WITH_METRICS:
+            default:
+                return this::reject;
+        }
+    }
+
+    private void reject(Runnable r, ThreadPoolExecutor e) {
+        rejected.increment();
+        // 过载时每次拒绝都会走到这里，只带上几个计数器；getMetrics() 要计算延迟分位数，太贵
+        // e.toString() 已经包含线程数、队列长度和完成数
+        throw new RejectedExecutionException("Task " + r + " rejected from " + e
+                + ", submitted=" + getSubmittedCount() + ", rejected=" + getRejectedCount()
+                + ", callerRuns=" + getCallerRunsCount());
+    }
+
+    // 包装原始任务，记录排队时间与执行时间
+    private final class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long enqueuedAt = System.nanoTime();
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            queueWaitTime.record(start - enqueuedAt);
+            try {
+                task.run();
+            } finally {
+                runTime.record(System.nanoTime() - start);
+                completed.increment();
+            }
+        }
+    }
+
     public static void main(String[] args) throws ExecutionException, InterruptedException {
         ThreadPoolExample pool = new ThreadPoolExample(2, 1);
 
@@ -81,7 +321,16 @@ public class ThreadPoolExample {
         System.out.println("当前在线程池中活跃的线程数量: " + pool.getPoolSize());
         System.out.println("当前任务的积压数量: " + pool.getQueueSize());
 
+        // 两个线程都在忙且队列已满，第四个任务会按 REJECT_WITH_METRICS 策略被拒绝
+        try {
+            pool.submitTask(() -> System.out.println("任务4执行了"));
+        } catch (RejectedExecutionException e) {
+            System.out.println("任务4被拒绝: " + e.getMessage());
+        }
+
         pool.shutdown();
+        pool.awaitTermination(5, TimeUnit.SECONDS);
+        System.out.println("线程池指标: " + pool.getMetrics());
 
         //使用 Runnable 作为参数的方法不会抛出异常也不会返回任何值 ( 返回 void )
         AtomicInteger counter = new AtomicInteger();
@@ -0,0 +1,279 @@
+package com.concurrency.base;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 每个工作线程一个提交队列、空闲时互相窃取的线程池
+ *
+ * Executors.newFixedThreadPool() 的所有生产者和所有工作线程共用一个 LinkedBlockingQueue，
+ * 入队和出队各一把锁，生产者线程很多时提交本身就成了瓶颈。这里：
+ * 1、提交：按提交线程打散到各个工作线程的无锁队列（ConcurrentLinkedQueue）上，不同生产者大多落在不同队列，互不竞争
+ * 2、执行：工作线程先取自己的队列，为空时从随机位置开始依次窃取其他队列的任务，都为空时才 park
+ * 3、亲和性：execute(affinityKey, task) 把同一个 key 的任务放到同一个工作线程的队列上，相关任务大概率在同一线程执行，
+ *    缓存更热；这只是提示，工作线程忙不过来时这些任务仍然可能被窃取，不保证串行
+ *
+ * 只有存在空闲线程时提交方才需要 unpark，繁忙时提交只是一次 CAS 入队。
+ */
+public class WorkStealingExecutor extends AbstractExecutorService {
+    private static final int RUNNING = 0;
+    private static final int SHUTDOWN = 1;
+    private static final int STOP = 2;
+    private static final AtomicIntegerFieldUpdater<WorkStealingExecutor> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(WorkStealingExecutor.class, "state");
+
+    private final Worker[] workers;
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+    private final CountDownLatch terminated;
+    private final LongAdder steals = new LongAdder();
+    private volatile int state = RUNNING;
+
+    public WorkStealingExecutor(int parallelism) {
+        this(parallelism, Executors.defaultThreadFactory());
+    }
+
+    public WorkStealingExecutor(int parallelism, ThreadFactory threadFactory) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be > 0");
+        }
+        this.workers = new Worker[parallelism];
+        this.terminated = new CountDownLatch(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = new Worker();
+        }
+        for (Worker worker : workers) {
+            worker.thread = threadFactory.newThread(worker);
+            worker.thread.start();
+        }
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        // 同一个生产者线程总是落在同一个队列上，不同生产者大致均匀分布
+        submitTo(spread((int) Thread.currentThread().getId()), task);
+    }
+
+    /**
+     * 同一个 affinityKey 的任务优先由同一个工作线程执行
+     */
+    public void execute(Object affinityKey, Runnable task) {
+        submitTo(spread(affinityKey.hashCode()), task);
+    }
+
+    public <T> Future<T> submit(Object affinityKey, Callable<T> task) {
+        RunnableFuture<T> future = newTaskFor(task);
+        execute(affinityKey, future);
+        return future;
+    }
+
+    public int getParallelism() {
+        return workers.length;
+    }
+
+    // 被其他线程窃取执行的任务数
+    public long getStealCount() {
+        return steals.sum();
+    }
+
+    // 各个队列中等待执行的任务数之和，只是近似值
+    public long getQueuedTaskCount() {
+        long count = 0;
+        for (Worker worker : workers) {
+            count += worker.queue.size();
+        }
+        return count;
+    }
+
+    private int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return ((h ^ (h >>> 16)) & 0x7fffffff) % workers.length;
+    }
+
+    private void submitTo(int index, Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        if (state != RUNNING) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+        Worker owner = workers[index];
+        owner.queue.offer(task);
+        // 与 shutdown() 并发时，工作线程可能已经在清空队列后退出，撤回任务并拒绝
+        if (state != RUNNING && owner.queue.remove(task)) {
+            throw new RejectedExecutionException("executor has been shut down");
+        }
+        // 入队之后再检查空闲线程数，与 Worker.awaitWork() 中"先登记空闲再检查队列"的顺序配合，不会丢失唤醒
+        if (idleWorkers.get() > 0) {
+            signal(owner);
+        }
+    }
+
+    // 优先唤醒队列的所有者，它不空闲时唤醒任意一个空闲线程来窃取
+    private void signal(Worker preferred) {
+        if (preferred.parked) {
+            LockSupport.unpark(preferred.thread);
+            return;
+        }
+        for (Worker worker : workers) {
+            if (worker.parked) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        // CAS 避免把并发 shutdownNow() 设置的 STOP 改回 SHUTDOWN
+        STATE.compareAndSet(this, RUNNING, SHUTDOWN);
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+    }
+
+    /**
+     * 中断所有工作线程，返回尚未执行的任务
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        state = STOP;
+        List<Runnable> tasks = new ArrayList<>();
+        for (Worker worker : workers) {
+            Runnable task;
+            while ((task = worker.queue.poll()) != null) {
+                tasks.add(task);
+            }
+            worker.thread.interrupt();
+        }
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return state != RUNNING;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private final class Worker implements Runnable {
+        private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+        private volatile boolean parked;
+        private Thread thread;
+
+        @Override
+        public void run() {
+            try {
+                while (state != STOP) {
+                    Runnable task = findTask();
+                    if (task == null) {
+                        // 关闭后所有队列都已清空才退出，保证已提交的任务都会执行：
+                        // 在 shutdown() 之前入队并通过了状态复查的任务，看到 SHUTDOWN 之后再扫描一次一定能找到
+                        if (state == SHUTDOWN) {
+                            task = findTask();
+                            if (task == null) {
+                                break;
+                            }
+                        } else {
+                            task = awaitWork();
+                            if (task == null) {
+                                continue;
+                            }
+                        }
+                    }
+                    try {
+                        task.run();
+                    } catch (Throwable t) {
+                        // 与 ThreadPoolExecutor 不同，这里不替换工作线程，异常交给线程的 UncaughtExceptionHandler 打印后继续
+                        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+                        handler.uncaughtException(thread, t);
+                    }
+                    // 清除任务遗留的中断标记，shutdownNow() 除外
+                    if (state != STOP) {
+                        Thread.interrupted();
+                    }
+                }
+            } finally {
+                terminated.countDown();
+            }
+        }
+
+        private Runnable findTask() {
+            Runnable task = queue.poll();
+            if (task != null) {
+                return task;
+            }
+            int n = workers.length;
+            int start = ThreadLocalRandom.current().nextInt(n);
+            for (int i = 0; i < n; i++) {
+                Worker victim = workers[(start + i) % n];
+                if (victim != this) {
+                    task = victim.queue.poll();
+                    if (task != null) {
+                        steals.increment();
+                        return task;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private Runnable awaitWork() {
+            parked = true;
+            idleWorkers.incrementAndGet();
+            try {
+                // 登记为空闲之后再检查一次，提交方要么看到空闲线程并唤醒，要么任务在这里被找到
+                Runnable task = findTask();
+                if (task == null && state == RUNNING) {
+                    LockSupport.park(this);
+                }
+                return task;
+            } finally {
+                idleWorkers.decrementAndGet();
+                parked = false;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        WorkStealingExecutor executor = new WorkStealingExecutor(4);
+        int producers = 8;
+        int tasksPerProducer = 100_000;
+        LongAdder done = new LongAdder();
+        CountDownLatch finished = new CountDownLatch(producers * tasksPerProducer);
+        long start = System.nanoTime();
+        for (int p = 0; p < producers; p++) {
+            new Thread(() -> {
+                for (int i = 0; i < tasksPerProducer; i++) {
+                    executor.execute(() -> {
+                        done.increment();
+                        finished.countDown();
+                    });
+                }
+            }).start();
+        }
+        finished.await();
+        System.out.println("executed " + done.sum() + " tasks in " + (System.nanoTime() - start) / 1_000_000
+                + "ms, steals: " + executor.getStealCount());
+
+        // 同一个用户的任务落在同一个工作线程上
+        for (int i = 0; i < 4; i++) {
+            executor.execute("user-42", () -> System.out.println("user-42 on " + Thread.currentThread().getName()));
+        }
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+}
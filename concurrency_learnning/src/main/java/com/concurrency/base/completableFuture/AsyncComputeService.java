@@ -0,0 +1,114 @@
+package com.concurrency.base.completableFuture;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 非阻塞的异步计算服务
+ *
+ * 1、loader 返回 CompletionStage，由它自己决定何时完成（例如由定时器、IO 回调完成），服务本身不占用任何线程等待结果
+ * 2、同一个 key 的请求在计算完成之前只会触发一次 loader，并发的调用方共享同一次计算；计算完成后从在途表中移除，下一次请求重新计算
+ * 3、每个调用方拿到的是共享 future 的一个依赖 future，某个调用方 cancel() 或 complete() 只影响它自己，不会影响其他调用方
+ *
+ * delayed() 用定时器模拟一个需要一段时间才能得到结果的计算：到期时在定时线程上完成 future，
+ * 而不是像 CalculateAsync 最初的写法那样让线程池线程 sleep 之后再 complete()。
+ * 十万个未完成的 future 只需要一个定时线程，而 sleep 的写法需要十万个线程。
+ */
+public class AsyncComputeService<K, V> {
+    private final Function<? super K, ? extends CompletionStage<V>> loader;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder deduplicated = new LongAdder();
+
+    public AsyncComputeService(Function<? super K, ? extends CompletionStage<V>> loader) {
+        this.loader = loader;
+    }
+
+    public CompletableFuture<V> get(K key) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            deduplicated.increment();
+            return existing.thenApply(Function.identity());
+        }
+        loads.increment();
+        // 先从在途表中移除再完成 future，调用方看到结果时，下一次 get() 一定会重新计算
+        try {
+            loader.apply(key).whenComplete((value, failure) -> {
+                inFlight.remove(key, created);
+                if (failure != null) {
+                    created.completeExceptionally(failure);
+                } else {
+                    created.complete(value);
+                }
+            });
+        } catch (Throwable t) {
+            inFlight.remove(key, created);
+            created.completeExceptionally(t);
+        }
+        return created.thenApply(Function.identity());
+    }
+
+    // 正在计算中的 key 数量
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    // 实际调用 loader 的次数
+    public long getLoadCount() {
+        return loads.sum();
+    }
+
+    // 复用了在途计算的请求数
+    public long getDeduplicatedCount() {
+        return deduplicated.sum();
+    }
+
+    /**
+     * 在 delay 之后由 timer 计算并完成的 future，计算应当足够轻量，不能阻塞定时线程
+     */
+    public static <T> CompletableFuture<T> delayed(Supplier<T> value, long delay, TimeUnit unit,
+                                                   ScheduledExecutorService timer) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        ScheduledFuture<?> scheduled = timer.schedule(() -> {
+            try {
+                future.complete(value.get());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        }, delay, unit);
+        // 调用方取消后不再占用定时队列
+        future.whenComplete((v, failure) -> scheduled.cancel(false));
+        return future;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1);
+        timer.setRemoveOnCancelPolicy(true);
+        AsyncComputeService<Integer, Integer> service = new AsyncComputeService<>(
+                key -> delayed(() -> key * key, 1, TimeUnit.SECONDS, timer));
+
+        // 十万个请求，只有一半不同的 key
+        int requests = 100_000;
+        int threadsBefore = Thread.activeCount();
+        long start = System.nanoTime();
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[requests];
+        for (int i = 0; i < requests; i++) {
+            futures[i] = service.get(i % (requests / 2));
+        }
+        long submitMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("outstanding futures: " + requests + ", in flight keys: " + service.getInFlightCount()
+                + ", threads: " + threadsBefore + " -> " + Thread.activeCount()
+                + ", submitted in " + submitMillis + "ms");
+
+        CompletableFuture.allOf(futures).join();
+        long totalMillis = (System.nanoTime() - start) / 1_000_000;
+        System.out.println("all completed in " + totalMillis + "ms, loads: " + service.getLoadCount()
+                + ", deduplicated: " + service.getDeduplicatedCount()
+                + ", in flight keys: " + service.getInFlightCount());
+        System.out.println("get(7) = " + service.get(7).join());
+        timer.shutdown();
+    }
+}
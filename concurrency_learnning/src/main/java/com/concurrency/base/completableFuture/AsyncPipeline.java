@@ -0,0 +1,320 @@
+package com.concurrency.base.completableFuture;
+
+import com.concurrency.base.LatencyHistogram;
+import com.concurrency.base.ThreadPoolExample;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 基于 CompletableFuture 的有界延迟流水线（Java 8，没有 orTimeout() / completeOnTimeout()）
+ *
+ * 每个阶段调用一个下游依赖（Dependency），依赖各自拥有：
+ * 1、隔离舱：独立的有界线程池（ThreadPoolExample），一个依赖变慢只会占满它自己的线程和队列，不会拖垮公共线程池或其他依赖，
+ *    队列满时直接以 RejectedExecutionException 失败，而不是无限排队
+ * 2、截止时间：阶段开始执行后超过 deadline 仍未完成，则以 TimeoutException 失败，并中断仍在执行的调用
+ * 3、对冲请求：第一次调用耗时超过该依赖历史延迟的 p95 时，再发出一次备份调用，先完成的结果生效，另一次被取消
+ *
+ * 取消向上游传播：CompletableFuture.cancel() 本身只影响当前 future，不会取消它所依赖的上游阶段。
+ * 这里每个阶段都记住上游阶段，阶段以取消或超时结束时取消尚未完成的上游，最终中断正在执行的调用。
+ *
+ * 用法：
+ *      CompletableFuture<String> f = AsyncPipeline.call(userService, () -> loadUser(id))
+ *              .thenCall(orderService, user -> () -> loadOrders(user))
+ *              .thenApply(orders -> render(orders))
+ *              .toFuture();
+ */
+public class AsyncPipeline<T> {
+    // 截止时间和对冲请求共用的定时器，只负责触发，不执行用户代码
+    private static final ScheduledThreadPoolExecutor TIMER = newTimer();
+
+    private final CompletableFuture<T> future;
+
+    private AsyncPipeline(CompletableFuture<T> future, AsyncPipeline<?> upstream) {
+        this.future = future;
+        if (upstream != null) {
+            future.whenComplete((value, failure) -> {
+                if (failure != null) {
+                    upstream.future.cancel(true);
+                }
+            });
+        }
+    }
+
+    /**
+     * 流水线的第一个阶段
+     */
+    public static <T> AsyncPipeline<T> call(Dependency dependency, Callable<T> call) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        dependency.launch(call, result);
+        return new AsyncPipeline<>(result, null);
+    }
+
+    /**
+     * 上游完成后调用下一个依赖，截止时间从本阶段开始执行时计算
+     */
+    public <R> AsyncPipeline<R> thenCall(Dependency dependency, Function<? super T, ? extends Callable<R>> next) {
+        CompletableFuture<R> result = new CompletableFuture<>();
+        future.whenComplete((value, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+                return;
+            }
+            Callable<R> call;
+            try {
+                call = next.apply(value);
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+                return;
+            }
+            dependency.launch(call, result);
+        });
+        return new AsyncPipeline<>(result, this);
+    }
+
+    // 不涉及下游调用的轻量转换，在完成上游的线程中执行
+    public <R> AsyncPipeline<R> thenApply(Function<? super T, ? extends R> fn) {
+        return new AsyncPipeline<>(future.thenApply(fn), this);
+    }
+
+    /**
+     * 整个流水线（到当前阶段为止）的截止时间，超时后取消所有未完成的阶段
+     */
+    public AsyncPipeline<T> withDeadline(long timeout, TimeUnit unit) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.whenComplete((value, failure) -> {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+            } else {
+                result.complete(value);
+            }
+        });
+        withTimeout(result, "pipeline deadline " + unit.toMillis(timeout) + "ms", unit.toNanos(timeout));
+        return new AsyncPipeline<>(result, this);
+    }
+
+    public CompletableFuture<T> toFuture() {
+        return future;
+    }
+
+    // 取消当前阶段，并沿着流水线向上游传播
+    public boolean cancel() {
+        return future.cancel(true);
+    }
+
+    private static <T> void withTimeout(CompletableFuture<T> future, String message, long timeoutNanos) {
+        ScheduledFuture<?> timeout = TIMER.schedule(
+                () -> future.completeExceptionally(new TimeoutException(message)), timeoutNanos, TimeUnit.NANOSECONDS);
+        future.whenComplete((value, failure) -> timeout.cancel(false));
+    }
+
+    private static ScheduledThreadPoolExecutor newTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "async-pipeline-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 大多数超时任务会在调用完成后被取消，及时从队列中移除，避免堆积
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    /**
+     * 一个下游依赖：隔离舱线程池 + 截止时间 + 对冲策略 + 延迟统计
+     */
+    public static class Dependency {
+        private static final double DEFAULT_HEDGE_PERCENTILE = 95;
+        // 样本太少时百分位没有意义，不发对冲请求
+        private static final long MIN_SAMPLES_FOR_HEDGE = 100;
+        // 重新计算对冲延迟的间隔，避免每次调用都遍历直方图
+        private static final long HEDGE_DELAY_REFRESH_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+        private final String name;
+        private final ThreadPoolExample bulkhead;
+        private final long deadlineNanos;
+        private final boolean hedged;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder hedges = new LongAdder();
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder rejections = new LongAdder();
+        private volatile long hedgeDelayNanos;
+        private volatile long hedgeDelayComputedAt = System.nanoTime() - HEDGE_DELAY_REFRESH_NANOS;
+
+        public Dependency(String name, ThreadPoolExample bulkhead, long deadline, TimeUnit unit, boolean hedged) {
+            if (deadline <= 0) {
+                throw new IllegalArgumentException("deadline must be > 0");
+            }
+            this.name = name;
+            this.bulkhead = bulkhead;
+            this.deadlineNanos = unit.toNanos(deadline);
+            this.hedged = hedged;
+        }
+
+        /**
+         * 创建一个使用独立有界线程池的依赖，线程和队列都占满时直接拒绝
+         */
+        public static Dependency of(String name, int threads, int queueCapacity, long deadline, TimeUnit unit,
+                                    boolean hedged) {
+            return new Dependency(name, new ThreadPoolExample(threads, queueCapacity), deadline, unit, hedged);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public ThreadPoolExample getBulkhead() {
+            return bulkhead;
+        }
+
+        // 成功调用的延迟，从提交到隔离舱开始计算，包含排队时间
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        public long getHedgeCount() {
+            return hedges.sum();
+        }
+
+        public long getTimeoutCount() {
+            return timeouts.sum();
+        }
+
+        public long getRejectedCount() {
+            return rejections.sum();
+        }
+
+        public void shutdown() {
+            bulkhead.shutdown();
+        }
+
+        @Override
+        public String toString() {
+            return name + "{latency=[" + latency + "], hedges=" + getHedgeCount() + ", timeouts=" + getTimeoutCount()
+                    + ", rejected=" + getRejectedCount() + "}";
+        }
+
+        <T> void launch(Callable<T> call, CompletableFuture<T> result) {
+            List<Attempt<T>> attempts = new CopyOnWriteArrayList<>();
+            AtomicInteger outstanding = new AtomicInteger();
+            ScheduledFuture<?> deadline = TIMER.schedule(() -> {
+                if (result.completeExceptionally(new TimeoutException(name + " deadline "
+                        + TimeUnit.NANOSECONDS.toMillis(deadlineNanos) + "ms exceeded"))) {
+                    timeouts.increment();
+                }
+            }, deadlineNanos, TimeUnit.NANOSECONDS);
+            long hedgeDelay = hedged ? hedgeDelay() : 0L;
+            ScheduledFuture<?> hedge = hedgeDelay > 0 && hedgeDelay < deadlineNanos
+                    ? TIMER.schedule(() -> {
+                        if (!result.isDone()) {
+                            hedges.increment();
+                            submit(new Attempt<>(call, result, outstanding), attempts);
+                        }
+                    }, hedgeDelay, TimeUnit.NANOSECONDS)
+                    : null;
+            // 结果确定（成功、失败、超时或被取消）后，清理定时任务并取消其余仍在执行的调用
+            result.whenComplete((value, failure) -> {
+                deadline.cancel(false);
+                if (hedge != null) {
+                    hedge.cancel(false);
+                }
+                for (Attempt<T> attempt : attempts) {
+                    attempt.cancel();
+                }
+            });
+            submit(new Attempt<>(call, result, outstanding), attempts);
+        }
+
+        private <T> void submit(Attempt<T> attempt, List<Attempt<T>> attempts) {
+            attempt.outstanding.incrementAndGet();
+            attempts.add(attempt);
+            // 结果可能在加入列表之前就已确定，此时上面的清理回调已经执行过
+            if (attempt.result.isDone()) {
+                attempt.cancel();
+                return;
+            }
+            try {
+                bulkhead.execute(attempt);
+            } catch (RejectedExecutionException e) {
+                rejections.increment();
+                attempt.fail(e);
+            }
+        }
+
+        private long hedgeDelay() {
+            long now = System.nanoTime();
+            if (now - hedgeDelayComputedAt >= HEDGE_DELAY_REFRESH_NANOS) {
+                hedgeDelayNanos = latency.getCount() < MIN_SAMPLES_FOR_HEDGE
+                        ? 0L : latency.getValueAtPercentile(DEFAULT_HEDGE_PERCENTILE);
+                hedgeDelayComputedAt = now;
+            }
+            return hedgeDelayNanos;
+        }
+
+        /**
+         * 一次调用。被取消时如果还未开始就直接跳过，正在执行则中断执行线程
+         */
+        private final class Attempt<T> implements Runnable {
+            private static final int NEW = 0;
+            private static final int RUNNING = 1;
+            private static final int FINISHED = 2;
+
+            private final Callable<T> call;
+            private final CompletableFuture<T> result;
+            // 同一阶段中尚未结束的调用数，最后一次调用失败时阶段才失败
+            private final AtomicInteger outstanding;
+            private final long submittedAt = System.nanoTime();
+            private int state = NEW;
+            private Thread runner;
+
+            Attempt(Callable<T> call, CompletableFuture<T> result, AtomicInteger outstanding) {
+                this.call = call;
+                this.result = result;
+                this.outstanding = outstanding;
+            }
+
+            @Override
+            public void run() {
+                synchronized (this) {
+                    if (state != NEW || result.isDone()) {
+                        state = FINISHED;
+                        return;
+                    }
+                    state = RUNNING;
+                    runner = Thread.currentThread();
+                }
+                try {
+                    T value = call.call();
+                    if (result.complete(value)) {
+                        latency.record(System.nanoTime() - submittedAt);
+                    }
+                    outstanding.decrementAndGet();
+                } catch (Throwable t) {
+                    fail(t);
+                } finally {
+                    synchronized (this) {
+                        state = FINISHED;
+                        runner = null;
+                    }
+                    // 清除 cancel() 可能设置的中断标记，不影响线程池线程执行后续任务
+                    Thread.interrupted();
+                }
+            }
+
+            void fail(Throwable t) {
+                if (outstanding.decrementAndGet() == 0) {
+                    result.completeExceptionally(t);
+                }
+            }
+
+            synchronized void cancel() {
+                if (state == RUNNING) {
+                    runner.interrupt();
+                }
+                state = FINISHED;
+            }
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.concurrency.base.completableFuture;
+
+import com.concurrency.base.LatencyHistogram;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+/**
+ * 注入延迟的负载生成器，对比三种写法的尾延迟：
+ * 1、supplyAsync + thenApplyAsync 全部跑在公共线程池上（ComputeCompletableFuture 的写法）
+ * 2、AsyncPipeline：隔离舱 + 截止时间
+ * 3、AsyncPipeline：隔离舱 + 截止时间 + 对冲请求
+ *
+ * 请求以固定速率发出（开环），不会因为系统变慢而减少发压，这样测到的才是真实的排队延迟。
+ * 两个模拟的下游依赖大部分时候很快，但有一小部分请求会卡住很久，这正是 p99 变差的常见原因。
+ */
+public class AsyncPipelineExample {
+    private static final int REQUESTS = 2000;
+    private static final long INTERVAL_MICROS = 2000;
+
+    public static void main(String[] args) throws InterruptedException {
+        System.out.println("commonPool:         " + run(AsyncPipelineExample::commonPool));
+
+        AsyncPipeline.Dependency users = AsyncPipeline.Dependency.of("users", 16, 64, 50, TimeUnit.MILLISECONDS, false);
+        AsyncPipeline.Dependency orders = AsyncPipeline.Dependency.of("orders", 16, 64, 80, TimeUnit.MILLISECONDS, false);
+        System.out.println("pipeline:           " + run(id -> pipeline(users, orders, id)));
+        System.out.println("    " + users);
+        System.out.println("    " + orders);
+        users.shutdown();
+        orders.shutdown();
+
+        AsyncPipeline.Dependency hedgedUsers = AsyncPipeline.Dependency.of("users", 16, 64, 50, TimeUnit.MILLISECONDS, true);
+        AsyncPipeline.Dependency hedgedOrders = AsyncPipeline.Dependency.of("orders", 16, 64, 80, TimeUnit.MILLISECONDS, true);
+        System.out.println("pipeline + hedging: " + run(id -> pipeline(hedgedUsers, hedgedOrders, id)));
+        System.out.println("    " + hedgedUsers);
+        System.out.println("    " + hedgedOrders);
+
+        // 取消最后一个阶段，正在执行的上游调用会被中断
+        AtomicBoolean interrupted = new AtomicBoolean();
+        AsyncPipeline<String> slow = AsyncPipeline.call(hedgedUsers, () -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                interrupted.set(true);
+                throw e;
+            }
+            return "user";
+        }).thenCall(hedgedOrders, user -> () -> "orders of " + user);
+        Thread.sleep(10);
+        slow.cancel();
+        Thread.sleep(10);
+        System.out.println("cancel propagated upstream: " + interrupted.get());
+
+        hedgedUsers.shutdown();
+        hedgedOrders.shutdown();
+    }
+
+    private static CompletableFuture<String> commonPool(int id) {
+        return CompletableFuture.supplyAsync(() -> uncheckedCall(() -> loadUser(id)))
+                .thenApplyAsync(user -> uncheckedCall(() -> loadOrders(user)));
+    }
+
+    private static CompletableFuture<String> pipeline(AsyncPipeline.Dependency users, AsyncPipeline.Dependency orders,
+                                                      int id) {
+        return AsyncPipeline.call(users, () -> loadUser(id))
+                .thenCall(orders, user -> () -> loadOrders(user))
+                .withDeadline(150, TimeUnit.MILLISECONDS)
+                .toFuture();
+    }
+
+    // 以固定速率发出 REQUESTS 个请求，记录端到端延迟与失败数
+    private static String run(IntFunction<CompletableFuture<String>> request) throws InterruptedException {
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder failures = new LongAdder();
+        CountDownLatch done = new CountDownLatch(REQUESTS);
+        ScheduledExecutorService generator = Executors.newSingleThreadScheduledExecutor();
+        int[] next = {0};
+        generator.scheduleAtFixedRate(() -> {
+            int id = next[0]++;
+            if (id >= REQUESTS) {
+                return;
+            }
+            long start = System.nanoTime();
+            request.apply(id).whenComplete((value, failure) -> {
+                latency.record(System.nanoTime() - start);
+                if (failure != null) {
+                    failures.increment();
+                }
+                done.countDown();
+            });
+        }, 0, INTERVAL_MICROS, TimeUnit.MICROSECONDS);
+        done.await();
+        generator.shutdownNow();
+        return "p50=" + millis(latency.getValueAtPercentile(50))
+                + ", p95=" + millis(latency.getValueAtPercentile(95))
+                + ", p99=" + millis(latency.getValueAtPercentile(99))
+                + ", p99.9=" + millis(latency.getValueAtPercentile(99.9))
+                + ", max=" + millis(latency.getMax())
+                + ", failed=" + failures.sum();
+    }
+
+    private static String loadUser(int id) throws InterruptedException {
+        injectLatency(5, 0.05, 100);
+        return "user-" + id;
+    }
+
+    private static String loadOrders(String user) throws InterruptedException {
+        injectLatency(10, 0.02, 150);
+        return "orders of " + user;
+    }
+
+    // 正常耗时 baseMillis，以 stallProbability 的概率卡住 stallMillis
+    private static void injectLatency(long baseMillis, double stallProbability, long stallMillis)
+            throws InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Thread.sleep(random.nextDouble() < stallProbability ? stallMillis : baseMillis);
+    }
+
+    private static <T> T uncheckedCall(Callable<T> call) {
+        try {
+            return call.call();
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.1fms", nanos / 1e6);
+    }
+}
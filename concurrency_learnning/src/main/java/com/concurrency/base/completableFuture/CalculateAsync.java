@@ -7,32 +7,27 @@ import java.util.concurrent.*;
  *
  * 可以使用无任何参数的构造函数来创建此类的实例，用于表示未来的某些结果，然后将其交给使用者，并在将来的某个时间调用 complete() 方法完成
  * 消费者可以使用 get() 方法来阻止当前线程，直到提供此结果。
+ *
+ * 完成 future 的一方不需要占用一个线程去 sleep 等待：由 ScheduledExecutorService 在到期时调用 complete()，
+ * 一个定时线程就可以同时"挂起"任意多个未完成的 future，见 AsyncComputeService。
  */
 public class CalculateAsync {
-    public static void main(String[] args) throws ExecutionException, InterruptedException {
-        CompletableFuture<Object> objectCompletableFuture = new CompletableFuture<>();
-        ExecutorService executorService = Executors.newCachedThreadPool();
-        executorService.submit(() -> {
-            try {
-                Thread.sleep(1000);
-                objectCompletableFuture.complete("Hello");
-            } catch (InterruptedException e) {
-                e.printStackTrace();
-            }
-        });
+    private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "calculate-async-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
 
-        System.out.println(objectCompletableFuture.get());
-        executorService.shutdown();
+    public static void main(String[] args) throws ExecutionException, InterruptedException {
+        Future<String> future = new CalculateAsync().calculateAsync();
+        System.out.println(future.get());
     }
 
-    public Future<String> calculateAsync() throws InterruptedException, ExecutionException {
-        Future<String> completableFuture = calculateAsync();
+    // 一秒后由定时线程完成，调用方立即拿到 future，期间没有任何线程被阻塞
+    public Future<String> calculateAsync() {
+        CompletableFuture<String> completableFuture = new CompletableFuture<>();
+        TIMER.schedule(() -> completableFuture.complete("Hello"), 1, TimeUnit.SECONDS);
         //Future<String> completableFuture = CompletableFuture.completedFuture("Hello");
-        // ...
-
-        String result = completableFuture.get();
-        System.out.println(result);
-
         return completableFuture;
     }
 }
@@ -0,0 +1,373 @@
+package com.concurrency.base.completableFuture;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 按完成顺序消费一组异步结果
+ *
+ * invokeAll() 之后按提交顺序逐个 get()，或者 Futures.allAsList().get()，都要等最慢的任务完成之后才能处理任何一个结果。
+ * 这里每个结果一完成就交给调用方，有三种消费方式：iterator()、stream() 和回调 forEach()。
+ * 1、limit(k)：拿到 k 个成功结果后结束，取消剩余任务，适合"多个副本中取最快的 k 个"
+ * 2、ErrorMode：FAIL_FAST 在第一个失败时结束并取消剩余任务；COLLECT_ERRORS 跳过失败继续，失败记录在 getErrors() 中
+ * 3、迭代器或流被提前关闭（close()），或者调用 cancel()，都会取消剩余任务
+ *
+ * 每个 CompletionOrder 只能消费一次。
+ */
+public final class CompletionOrder<T> {
+    /**
+     * FAIL_FAST:      第一个失败结束整个消费，迭代器抛出 CompletionException，回调返回的 future 异常完成
+     * COLLECT_ERRORS: 失败不交给调用方，记录下来后继续等待其他结果
+     */
+    public enum ErrorMode {
+        FAIL_FAST,
+        COLLECT_ERRORS
+    }
+
+    private final List<Future<?>> futures = new ArrayList<>();
+    private final BlockingQueue<Completed<T>> completions = new LinkedBlockingQueue<>();
+    private final List<Throwable> errors = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean consumed = new AtomicBoolean();
+    private final AtomicInteger drainers = new AtomicInteger();
+    private int limit = Integer.MAX_VALUE;
+    private ErrorMode errorMode = ErrorMode.FAIL_FAST;
+
+    // 以下状态只由当前的消费方（迭代线程或持有 drainers 的回调线程）访问
+    private int arrived;
+    private int successes;
+    private boolean finished;
+    private Consumer<? super T> callback;
+    private volatile CompletableFuture<Void> callbackDone;
+
+    private CompletionOrder() {
+    }
+
+    public static <T> CompletionOrder<T> of(Collection<? extends CompletableFuture<? extends T>> futures) {
+        CompletionOrder<T> order = new CompletionOrder<>();
+        order.futures.addAll(futures);
+        for (CompletableFuture<? extends T> future : futures) {
+            future.whenComplete((value, failure) -> order.onComplete(value, unwrap(failure)));
+        }
+        return order;
+    }
+
+    public static <T> CompletionOrder<T> ofListenable(Collection<? extends ListenableFuture<? extends T>> futures) {
+        CompletionOrder<T> order = new CompletionOrder<>();
+        order.futures.addAll(futures);
+        for (ListenableFuture<? extends T> future : futures) {
+            future.addListener(() -> {
+                try {
+                    order.onComplete(future.get(), null);
+                } catch (ExecutionException e) {
+                    order.onComplete(null, e.getCause());
+                } catch (CancellationException | InterruptedException e) {
+                    order.onComplete(null, e);
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        return order;
+    }
+
+    /**
+     * 把任务提交到 executor，取代 invokeAll()：不等待全部完成，取消时会中断正在执行的任务
+     */
+    public static <T> CompletionOrder<T> submit(Executor executor, Collection<? extends Callable<? extends T>> tasks) {
+        CompletionOrder<T> order = new CompletionOrder<>();
+        List<FutureTask<T>> created = new ArrayList<>(tasks.size());
+        for (Callable<? extends T> task : tasks) {
+            created.add(new FutureTask<T>(task::call) {
+                @Override
+                protected void done() {
+                    try {
+                        order.onComplete(get(), null);
+                    } catch (ExecutionException e) {
+                        order.onComplete(null, e.getCause());
+                    } catch (CancellationException | InterruptedException e) {
+                        order.onComplete(null, e);
+                    }
+                }
+            });
+        }
+        order.futures.addAll(created);
+        for (FutureTask<T> task : created) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.cancel(false);
+            }
+        }
+        return order;
+    }
+
+    /**
+     * 拿到 k 个成功结果后结束
+     */
+    public CompletionOrder<T> limit(int k) {
+        if (k <= 0) {
+            throw new IllegalArgumentException("k must be > 0");
+        }
+        this.limit = k;
+        return this;
+    }
+
+    public CompletionOrder<T> errorMode(ErrorMode errorMode) {
+        this.errorMode = Objects.requireNonNull(errorMode);
+        return this;
+    }
+
+    /**
+     * 按完成顺序返回成功的结果，hasNext() 会阻塞到下一个结果完成；关闭迭代器会取消剩余任务
+     */
+    public CompletionIterator<T> iterator() {
+        claim();
+        return new CompletionIterator<>(this);
+    }
+
+    /**
+     * 按完成顺序的顺序流，短路操作（findFirst()、limit() 等）结束后请关闭流以取消剩余任务，可以用 try-with-resources
+     */
+    public Stream<T> stream() {
+        CompletionIterator<T> iterator = iterator();
+        Spliterator<T> spliterator = Spliterators.spliteratorUnknownSize(iterator, 0);
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
+
+    /**
+     * 每个成功结果完成时在完成它的线程上回调 onResult，回调之间不会并发执行
+     * 返回的 future 在消费结束时完成，FAIL_FAST 下遇到失败时异常完成，取消它会取消剩余任务
+     */
+    public CompletableFuture<Void> forEach(Consumer<? super T> onResult) {
+        claim();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        done.whenComplete((ignored, failure) -> {
+            if (done.isCancelled()) {
+                cancel();
+            }
+        });
+        callback = onResult;
+        callbackDone = done;
+        drain();
+        return done;
+    }
+
+    // 失败的任务，COLLECT_ERRORS 模式下消费结束后查看
+    public List<Throwable> getErrors() {
+        return errors;
+    }
+
+    /**
+     * 取消所有尚未完成的任务
+     */
+    public void cancel() {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    private void claim() {
+        if (!consumed.compareAndSet(false, true)) {
+            throw new IllegalStateException("results have already been consumed");
+        }
+        finished = futures.isEmpty();
+    }
+
+    private void onComplete(Object value, Throwable failure) {
+        @SuppressWarnings("unchecked")
+        T result = (T) value;
+        completions.offer(new Completed<>(result, failure));
+        if (callbackDone != null) {
+            drain();
+        }
+    }
+
+    // 回调模式：同一时刻只有一个线程在处理完成队列，其余线程只入队
+    private void drain() {
+        if (drainers.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        while (true) {
+            Completed<T> completed;
+            while (!finished && (completed = completions.poll()) != null) {
+                T value;
+                try {
+                    if (!accept(completed)) {
+                        continue;
+                    }
+                    value = completed.value;
+                } catch (CompletionException e) {
+                    callbackDone.completeExceptionally(e.getCause());
+                    break;
+                }
+                try {
+                    callback.accept(value);
+                } catch (Throwable t) {
+                    finish();
+                    callbackDone.completeExceptionally(t);
+                }
+            }
+            if (finished) {
+                callbackDone.complete(null);
+            }
+            missed = drainers.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 处理一个完成的结果，返回它是否应该交给调用方；FAIL_FAST 下遇到失败抛出 CompletionException
+     */
+    private boolean accept(Completed<T> completed) {
+        arrived++;
+        boolean deliver = false;
+        if (completed.failure == null) {
+            successes++;
+            deliver = true;
+            if (successes >= limit) {
+                finish();
+            }
+        } else if (errorMode == ErrorMode.FAIL_FAST) {
+            finish();
+            throw new CompletionException(completed.failure);
+        } else {
+            errors.add(completed.failure);
+        }
+        if (arrived == futures.size()) {
+            finished = true;
+        }
+        return deliver;
+    }
+
+    private void finish() {
+        finished = true;
+        cancel();
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        return failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+    }
+
+    /**
+     * 阻塞式的完成顺序迭代器，不是线程安全的，只能由一个线程使用
+     */
+    public static final class CompletionIterator<T> implements Iterator<T>, AutoCloseable {
+        private final CompletionOrder<T> order;
+        private boolean buffered;
+        private T next;
+
+        private CompletionIterator(CompletionOrder<T> order) {
+            this.order = order;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!buffered && !order.finished) {
+                Completed<T> completed;
+                try {
+                    completed = order.completions.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    order.finish();
+                    throw new CompletionException(e);
+                }
+                if (order.accept(completed)) {
+                    buffered = true;
+                    next = completed.value;
+                }
+            }
+            return buffered;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T value = next;
+            buffered = false;
+            next = null;
+            return value;
+        }
+
+        /**
+         * 停止消费并取消剩余任务
+         */
+        @Override
+        public void close() {
+            order.finish();
+        }
+    }
+
+    private static final class Completed<T> {
+        private final T value;
+        private final Throwable failure;
+
+        Completed(T value, Throwable failure) {
+            this.value = value;
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * 十个副本各有不同的延迟，对比 invokeAll() 逐个 get() 与按完成顺序消费拿到第一个结果的时间
+     */
+    public static void main(String[] args) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        List<Callable<String>> replicas = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int id = i;
+            replicas.add(() -> {
+                Thread.sleep(50 + (9 - id) * 30);
+                if (id == 7) {
+                    throw new IllegalStateException("replica-" + id + " failed");
+                }
+                return "replica-" + id;
+            });
+        }
+
+        long start = System.nanoTime();
+        List<Future<String>> all = executor.invokeAll(replicas);
+        System.out.println("invokeAll, first result after " + (System.nanoTime() - start) / 1_000_000 + "ms: "
+                + all.get(0).get());
+
+        // 迭代器：完成一个处理一个，失败被跳过并记录
+        start = System.nanoTime();
+        CompletionOrder<String> order = CompletionOrder.submit(executor, replicas)
+                .errorMode(ErrorMode.COLLECT_ERRORS);
+        try (CompletionIterator<String> iterator = order.iterator()) {
+            while (iterator.hasNext()) {
+                System.out.println((System.nanoTime() - start) / 1_000_000 + "ms: " + iterator.next());
+            }
+        }
+        System.out.println("errors: " + order.getErrors());
+
+        // 流：只要最快的 3 个结果，其余任务被取消（被中断）
+        start = System.nanoTime();
+        try (Stream<String> fastest = CompletionOrder.<String>submit(executor, replicas).limit(3)
+                .errorMode(ErrorMode.COLLECT_ERRORS).stream()) {
+            System.out.println("fastest 3: " + fastest.collect(Collectors.toList()) + " after "
+                    + (System.nanoTime() - start) / 1_000_000 + "ms");
+        }
+
+        // 回调：FAIL_FAST 模式下 replica-7 的失败结束消费并取消剩余任务
+        CompletableFuture<Void> done = CompletionOrder.<String>submit(executor, replicas)
+                .forEach(result -> System.out.println("callback: " + result));
+        try {
+            done.join();
+        } catch (CompletionException e) {
+            System.out.println("fail fast: " + e.getCause().getMessage());
+        }
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,96 @@
+package com.concurrency.base.forkJoinPool;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * CustomRecursiveTask 的零拷贝版本：过滤-映射-求和
+ *
+ * 与 CustomRecursiveTask 的区别：
+ * 1、 所有子任务共享同一个数组，只记录 [from, to) 下标区间，拆分时不再 Arrays.copyOfRange
+ * 2、 拆分时只 fork() 右半部分，左半部分在当前线程直接 compute()，省去 invokeAll 和临时 ArrayList
+ * 3、 过滤条件和映射函数可以通过 IntPredicate / IntUnaryOperator 传入
+ * 4、 结果用 long 累加，避免大数组求和时 int 溢出
+ * 5、 阈值可以指定，也可以根据数组长度和并行度自动计算
+ */
+public class ArrayRangeReduceTask extends RecursiveTask<Long> {
+    // 与 CustomRecursiveTask 中硬编码的逻辑相同
+    public static final IntPredicate DEFAULT_FILTER = a -> a > 10 && a < 27;
+    public static final IntUnaryOperator DEFAULT_MAPPER = a -> a * 10;
+
+    // 自动计算阈值时的下限，区间太小时拆分的开销会超过计算本身
+    private static final int MIN_THRESHOLD = 1 << 10;
+    // 每个工作线程大约分到的任务数，留出余量给工作窃取做负载均衡
+    private static final int TASKS_PER_WORKER = 8;
+
+    private final int[] array;
+    private final int from;
+    private final int to;
+    private final int threshold;
+    private final IntPredicate filter;
+    private final IntUnaryOperator mapper;
+
+    public ArrayRangeReduceTask(int[] array, int from, int to, int threshold,
+                                IntPredicate filter, IntUnaryOperator mapper) {
+        this.array = array;
+        this.from = from;
+        this.to = to;
+        this.threshold = Math.max(1, threshold);
+        this.filter = filter;
+        this.mapper = mapper;
+    }
+
+    @Override
+    protected Long compute() {
+        if (to - from <= threshold) {
+            return processing();
+        }
+        int mid = (from + to) >>> 1;
+        ArrayRangeReduceTask right = new ArrayRangeReduceTask(array, mid, to, threshold, filter, mapper);
+        right.fork();
+        long left = new ArrayRangeReduceTask(array, from, mid, threshold, filter, mapper).compute();
+        return left + right.join();
+    }
+
+    private long processing() {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            int a = array[i];
+            if (filter.test(a)) {
+                sum += mapper.applyAsInt(a);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 根据区间长度和并行度计算阈值，使每个工作线程大约分到 TASKS_PER_WORKER 个叶子任务
+     */
+    public static int autoThreshold(int length, int parallelism) {
+        return Math.max(MIN_THRESHOLD, length / (Math.max(1, parallelism) * TASKS_PER_WORKER));
+    }
+
+    public static long reduce(int[] array, IntPredicate filter, IntUnaryOperator mapper) {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        return reduce(array, 0, array.length, autoThreshold(array.length, pool.getParallelism()), filter, mapper, pool);
+    }
+
+    public static long reduce(int[] array, int from, int to, int threshold,
+                              IntPredicate filter, IntUnaryOperator mapper, ForkJoinPool pool) {
+        return pool.invoke(new ArrayRangeReduceTask(array, from, to, threshold, filter, mapper));
+    }
+
+    public static void main(String[] args) {
+        int[] arr = {1, 2, 3, 11, 12, 13, 24, 25, 26, 27, 28};
+        // 与 CustomRecursiveTask 的结果一致
+        System.out.println("The sum is: " + reduce(arr, DEFAULT_FILTER, DEFAULT_MAPPER));
+
+        // 大数组下 int 求和会溢出，long 累加不会
+        int[] large = new int[50_000_000];
+        Arrays.fill(large, 100);
+        System.out.println("Large sum: " + reduce(large, a -> true, a -> a * 1000));
+    }
+}
@@ -0,0 +1,136 @@
+package com.concurrency.base.forkJoinPool;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * 在堆外内存上执行 ArrayRangeReduceTask 同样的过滤-映射-求和
+ *
+ * 数据来源可以是 FileChannel.map() 得到的内存映射文件，也可以是 ByteBuffer.allocateDirect() 分配的直接内存，
+ * 只需要通过 asIntBuffer() 转成 IntBuffer。任务之间共享同一个 IntBuffer，只使用绝对下标的 get(index)，
+ * 不修改 position，因此多个线程并发读取是安全的，数据也不会被拷贝到堆上。
+ *
+ * 单次 FileChannel.map() 最多映射 2GB，reduceFile() 会把大文件切成多个映射段，每段作为一个独立的根任务并行执行。
+ */
+public class BufferRangeReduceTask extends RecursiveTask<Long> {
+    // 单个映射段的最大字节数，保持 4 字节对齐
+    private static final long MAX_SEGMENT_BYTES = Integer.MAX_VALUE & ~3L;
+
+    private final IntBuffer buffer;
+    private final int from;
+    private final int to;
+    private final int threshold;
+    private final IntPredicate filter;
+    private final IntUnaryOperator mapper;
+
+    public BufferRangeReduceTask(IntBuffer buffer, int from, int to, int threshold,
+                                 IntPredicate filter, IntUnaryOperator mapper) {
+        this.buffer = buffer;
+        this.from = from;
+        this.to = to;
+        this.threshold = Math.max(1, threshold);
+        this.filter = filter;
+        this.mapper = mapper;
+    }
+
+    @Override
+    protected Long compute() {
+        if (to - from <= threshold) {
+            return processing();
+        }
+        int mid = (from + to) >>> 1;
+        BufferRangeReduceTask right = new BufferRangeReduceTask(buffer, mid, to, threshold, filter, mapper);
+        right.fork();
+        long left = new BufferRangeReduceTask(buffer, from, mid, threshold, filter, mapper).compute();
+        return left + right.join();
+    }
+
+    private long processing() {
+        long sum = 0;
+        for (int i = from; i < to; i++) {
+            int a = buffer.get(i);
+            if (filter.test(a)) {
+                sum += mapper.applyAsInt(a);
+            }
+        }
+        return sum;
+    }
+
+    public static long reduce(IntBuffer buffer, IntPredicate filter, IntUnaryOperator mapper) {
+        return reduce(buffer, filter, mapper, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 与 NIO 的相对读取一致，处理 [position(), limit()) 之间剩余的元素，例如跳过了文件头的缓冲区、
+     * IntBuffer.wrap(array, offset, length) 得到的视图；不修改 buffer 的 position
+     */
+    public static long reduce(IntBuffer buffer, IntPredicate filter, IntUnaryOperator mapper, ForkJoinPool pool) {
+        int from = buffer.position();
+        int to = buffer.limit();
+        int threshold = ArrayRangeReduceTask.autoThreshold(to - from, pool.getParallelism());
+        return pool.invoke(new BufferRangeReduceTask(buffer, from, to, threshold, filter, mapper));
+    }
+
+    /**
+     * 对一个由 int 组成的二进制文件求和，文件以只读方式映射到内存，末尾不足 4 字节的部分被忽略
+     */
+    public static long reduceFile(Path file, ByteOrder order, IntPredicate filter, IntUnaryOperator mapper,
+                                  ForkJoinPool pool) throws IOException {
+        List<ForkJoinTask<Long>> segments = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size() & ~3L;
+            // 映射在 channel 关闭后仍然有效
+            for (long position = 0; position < size; position += MAX_SEGMENT_BYTES) {
+                long length = Math.min(MAX_SEGMENT_BYTES, size - position);
+                IntBuffer ints = channel.map(FileChannel.MapMode.READ_ONLY, position, length).order(order).asIntBuffer();
+                int threshold = ArrayRangeReduceTask.autoThreshold(ints.limit(), pool.getParallelism());
+                segments.add(pool.submit(new BufferRangeReduceTask(ints, 0, ints.limit(), threshold, filter, mapper)));
+            }
+        }
+        long sum = 0;
+        for (ForkJoinTask<Long> segment : segments) {
+            sum += segment.join();
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] arr = new int[10_000_000];
+        for (int i = 0; i < arr.length; i++) {
+            arr[i] = i % 40;
+        }
+
+        // 直接内存
+        ByteBuffer direct = ByteBuffer.allocateDirect(arr.length * 4).order(ByteOrder.nativeOrder());
+        direct.asIntBuffer().put(arr);
+        long directSum = reduce(direct.asIntBuffer(), ArrayRangeReduceTask.DEFAULT_FILTER, ArrayRangeReduceTask.DEFAULT_MAPPER);
+
+        // 内存映射文件
+        Path file = Files.createTempFile("ints", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            direct.clear();
+            while (direct.hasRemaining()) {
+                channel.write(direct);
+            }
+        }
+        long mappedSum = reduceFile(file, ByteOrder.nativeOrder(), ArrayRangeReduceTask.DEFAULT_FILTER,
+                ArrayRangeReduceTask.DEFAULT_MAPPER, ForkJoinPool.commonPool());
+        Files.delete(file);
+
+        int heapSum = ForkJoinPool.commonPool().invoke(new CustomRecursiveTask(arr));
+        System.out.println("heap: " + heapSum + ", direct: " + directSum + ", mapped: " + mappedSum);
+    }
+}
@@ -0,0 +1,251 @@
+package com.concurrency.base.forkJoinPool;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 紧凑的数组化树结构（structure of arrays），用于存放上亿个节点的大树
+ *
+ * TreeNode 每个节点都是一个对象，子节点放在 HashSet 里，每个节点额外占用 100 多字节，并且遍历顺序依赖对象的 identityHashCode，不确定。
+ * CompactTree 只用几个 int 数组，每个节点 16 字节：
+ * values:       节点的值
+ * childOffsets: CSR 格式，节点 i 的子节点是 childIndex[childOffsets[i] .. childOffsets[i + 1])
+ * childIndex:   所有节点的子节点编号
+ * subtreeEnd:   节点 i 的子树是编号区间 [i, subtreeEnd[i])
+ *
+ * 节点按先序（DFS）编号，根节点为 0，同一个父节点下的子节点保持插入顺序。先序编号保证每棵子树在数组中是连续的一段，
+ * 所以对整棵树或任意子树的归约都退化为对 values 数组一个区间的顺序扫描，对缓存非常友好，并行时按区间拆分即可。
+ */
+public final class CompactTree {
+    private static final int DEFAULT_THRESHOLD = 1 << 14;
+
+    private final int[] values;
+    private final int[] childOffsets;
+    private final int[] childIndex;
+    private final int[] subtreeEnd;
+
+    private CompactTree(int[] values, int[] childOffsets, int[] childIndex, int[] subtreeEnd) {
+        this.values = values;
+        this.childOffsets = childOffsets;
+        this.childIndex = childIndex;
+        this.subtreeEnd = subtreeEnd;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public int value(int node) {
+        return values[node];
+    }
+
+    public int childCount(int node) {
+        return childOffsets[node + 1] - childOffsets[node];
+    }
+
+    // 节点 node 的第 k 个子节点
+    public int child(int node, int k) {
+        return childIndex[childOffsets[node] + k];
+    }
+
+    public int subtreeSize(int node) {
+        return subtreeEnd[node] - node;
+    }
+
+    public long reduce(LongMonoid monoid) {
+        return reduceSubtree(0, monoid, ForkJoinPool.commonPool());
+    }
+
+    public long reduce(LongMonoid monoid, ForkJoinPool pool) {
+        return reduceSubtree(0, monoid, pool);
+    }
+
+    // 对以 node 为根的子树归约
+    public long reduceSubtree(int node, LongMonoid monoid, ForkJoinPool pool) {
+        if (values.length == 0) {
+            return monoid.identity();
+        }
+        return pool.invoke(new RangeReduceTask(values, node, subtreeEnd[node], DEFAULT_THRESHOLD, monoid));
+    }
+
+    /**
+     * 把 TreeNode 结构转换成 CompactTree，子节点顺序为 HashSet 的迭代顺序
+     */
+    public static CompactTree from(TreeNode root) {
+        Builder builder = new Builder();
+        ArrayDeque<TreeNode> nodes = new ArrayDeque<>();
+        // 与 nodes 一一对应的父节点编号，避免 Integer 装箱
+        int[] parents = new int[16];
+        nodes.push(root);
+        parents[0] = -1;
+        while (!nodes.isEmpty()) {
+            int parent = parents[nodes.size() - 1];
+            TreeNode node = nodes.pop();
+            int id = parent < 0 ? builder.addRoot(node.value) : builder.addChild(parent, node.value);
+            for (TreeNode child : node.children) {
+                if (nodes.size() == parents.length) {
+                    parents = Arrays.copyOf(parents, parents.length * 2);
+                }
+                parents[nodes.size()] = id;
+                nodes.push(child);
+            }
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 逐个添加节点，addRoot()/addChild() 返回的是构建期的编号，build() 之后节点会被重新按先序编号
+     */
+    public static final class Builder {
+        private int[] values = new int[16];
+        private int[] parents = new int[16];
+        private int size;
+
+        public int addRoot(int value) {
+            if (size != 0) {
+                throw new IllegalStateException("root already added");
+            }
+            return add(value, -1);
+        }
+
+        public int addChild(int parent, int value) {
+            if (parent < 0 || parent >= size) {
+                throw new IllegalArgumentException("unknown parent: " + parent);
+            }
+            return add(value, parent);
+        }
+
+        private int add(int value, int parent) {
+            if (size == values.length) {
+                int capacity = size + (size >> 1);
+                values = Arrays.copyOf(values, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+            }
+            values[size] = value;
+            parents[size] = parent;
+            return size++;
+        }
+
+        public CompactTree build() {
+            int n = size;
+            // 1、 按构建期编号生成 CSR，同一个父节点下保持插入顺序
+            int[] offsets = new int[n + 1];
+            for (int i = 1; i < n; i++) {
+                offsets[parents[i] + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                offsets[i + 1] += offsets[i];
+            }
+            int[] children = new int[Math.max(0, n - 1)];
+            int[] cursor = Arrays.copyOf(offsets, n);
+            for (int i = 1; i < n; i++) {
+                children[cursor[parents[i]]++] = i;
+            }
+
+            // 2、 迭代 DFS 计算先序编号，子节点逆序入栈以保证按插入顺序访问
+            int[] preorder = new int[n];
+            int[] stack = new int[n];
+            int top = 0;
+            int next = 0;
+            if (n > 0) {
+                stack[top++] = 0;
+            }
+            while (top > 0) {
+                int node = stack[--top];
+                preorder[node] = next++;
+                for (int k = offsets[node + 1] - 1; k >= offsets[node]; k--) {
+                    stack[top++] = children[k];
+                }
+            }
+
+            // 3、 按先序编号重排 values 和父节点
+            int[] newValues = new int[n];
+            int[] newParents = stack;
+            for (int i = 0; i < n; i++) {
+                newValues[preorder[i]] = values[i];
+                newParents[preorder[i]] = parents[i] < 0 ? -1 : preorder[parents[i]];
+            }
+
+            // 4、 逆序累加子树大小，再按新编号重新生成 CSR（子节点编号递增，天然保持插入顺序）
+            int[] subtreeEnd = preorder;
+            Arrays.fill(subtreeEnd, 1);
+            for (int v = n - 1; v > 0; v--) {
+                subtreeEnd[newParents[v]] += subtreeEnd[v];
+            }
+            Arrays.fill(offsets, 0);
+            for (int v = 1; v < n; v++) {
+                offsets[newParents[v] + 1]++;
+            }
+            for (int i = 0; i < n; i++) {
+                offsets[i + 1] += offsets[i];
+                subtreeEnd[i] += i;
+            }
+            System.arraycopy(offsets, 0, cursor, 0, n);
+            for (int v = 1; v < n; v++) {
+                children[cursor[newParents[v]]++] = v;
+            }
+            return new CompactTree(newValues, offsets, children, subtreeEnd);
+        }
+    }
+
+    // 对 values 的一个区间做 LongMonoid 归约
+    private static final class RangeReduceTask extends RecursiveTask<Long> {
+        private final int[] values;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final LongMonoid monoid;
+
+        RangeReduceTask(int[] values, int from, int to, int threshold, LongMonoid monoid) {
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.monoid = monoid;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from <= threshold) {
+                long result = monoid.identity();
+                for (int i = from; i < to; i++) {
+                    result = monoid.combine(result, monoid.map(values[i]));
+                }
+                return result;
+            }
+            int mid = (from + to) >>> 1;
+            RangeReduceTask right = new RangeReduceTask(values, mid, to, threshold, monoid);
+            right.fork();
+            long left = new RangeReduceTask(values, from, mid, threshold, monoid).compute();
+            return monoid.combine(left, right.join());
+        }
+    }
+
+    public static void main(String[] args) {
+        // 与 CountingTask 中相同的树
+        TreeNode tree = new TreeNode(5,
+                new TreeNode(3), new TreeNode(2,
+                new TreeNode(2), new TreeNode(8)));
+        CompactTree compact = CompactTree.from(tree);
+        System.out.println("sum: " + compact.reduce(LongMonoid.SUM) + ", count: " + compact.reduce(LongMonoid.COUNT));
+
+        // 直接用 Builder 构建一棵 1000 万个节点的随机树
+        Builder builder = CompactTree.builder();
+        builder.addRoot(1);
+        Random random = new Random(42);
+        for (int i = 1; i < 10_000_000; i++) {
+            builder.addChild(random.nextInt(i), 1);
+        }
+        CompactTree large = builder.build();
+        System.out.println("large count: " + large.reduce(LongMonoid.COUNT)
+                + ", root children: " + large.childCount(0)
+                + ", first subtree size: " + large.subtreeSize(large.child(0, 0)));
+    }
+}
@@ -16,6 +16,8 @@ import java.util.logging.Logger;
  * 2、 返回值的任务的RecursiveTask<V>；
  * 这两个类都有一个抽象方法 compute() ，用于定义任务的逻辑。
  * 我们所要做的，就是继承任意一个类，然后实现 compute() 方法。
+ *
+ * 这里每层拆分都 substring 拷贝字符、叶子中 println，只用于演示；处理大文本时使用按下标区间拆分的 TextTransformTask。
  */
 public class CustomRecursiveAction extends RecursiveAction {
     private String workload = "";
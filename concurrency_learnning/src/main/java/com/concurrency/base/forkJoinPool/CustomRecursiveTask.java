@@ -12,14 +12,21 @@ public class CustomRecursiveTask extends RecursiveTask<Integer> {
     private int[] arr;
 
     private static final int THRESHOLD = 20;
+    // 数组长度超过该阈值才继续拆分，默认为 THRESHOLD
+    private final int threshold;
 
     public CustomRecursiveTask(int[] arr) {
+        this(arr, THRESHOLD);
+    }
+
+    public CustomRecursiveTask(int[] arr, int threshold) {
         this.arr = arr;
+        this.threshold = threshold;
     }
 
     @Override
     protected Integer compute() {
-        if (arr.length > THRESHOLD) {
+        if (arr.length > threshold) {
             return ForkJoinTask.invokeAll(createSubtasks())
                     .stream()
                     .mapToInt(ForkJoinTask::join)
@@ -32,9 +39,9 @@ public class CustomRecursiveTask extends RecursiveTask<Integer> {
     private Collection<CustomRecursiveTask> createSubtasks() {
         List<CustomRecursiveTask> dividedTasks = new ArrayList<>();
         dividedTasks.add(new CustomRecursiveTask(
-                Arrays.copyOfRange(arr, 0, arr.length / 2)));
+                Arrays.copyOfRange(arr, 0, arr.length / 2), threshold));
         dividedTasks.add(new CustomRecursiveTask(
-                Arrays.copyOfRange(arr, arr.length / 2, arr.length)));
+                Arrays.copyOfRange(arr, arr.length / 2, arr.length), threshold));
         return dividedTasks;
     }
 
@@ -0,0 +1,38 @@
+package com.concurrency.base.forkJoinPool;
+
+import java.util.function.IntToLongFunction;
+import java.util.function.LongBinaryOperator;
+
+/**
+ * 基于 long 的幺半群归约：先把每个节点的 int 值映射成 long，再用满足结合律的 combine 合并，identity 为单位元
+ * 结合律保证了按原顺序任意拆分、分组合并的结果都相同，因此可以安全地用于并行归约；
+ * 交换律不是必需的，只要并行归约保持元素原来的先后顺序（TreeReduceTask 按单线程遍历的顺序合并）
+ */
+public final class LongMonoid {
+    public static final LongMonoid SUM = new LongMonoid(0L, v -> v, Long::sum);
+    public static final LongMonoid COUNT = new LongMonoid(0L, v -> 1L, Long::sum);
+    public static final LongMonoid MAX = new LongMonoid(Long.MIN_VALUE, v -> v, Math::max);
+    public static final LongMonoid MIN = new LongMonoid(Long.MAX_VALUE, v -> v, Math::min);
+
+    private final long identity;
+    private final IntToLongFunction mapper;
+    private final LongBinaryOperator combiner;
+
+    public LongMonoid(long identity, IntToLongFunction mapper, LongBinaryOperator combiner) {
+        this.identity = identity;
+        this.mapper = mapper;
+        this.combiner = combiner;
+    }
+
+    public long identity() {
+        return identity;
+    }
+
+    public long map(int value) {
+        return mapper.applyAsLong(value);
+    }
+
+    public long combine(long left, long right) {
+        return combiner.applyAsLong(left, right);
+    }
+}
@@ -0,0 +1,276 @@
+package com.concurrency.base.forkJoinPool;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * CustomRecursiveAction 的区间版本：并行的逐字符文本转换
+ *
+ * 与 CustomRecursiveAction 的区别：
+ * 1、 所有子任务共享输入和输出两个 CharBuffer（char[] 通过 CharBuffer.wrap() 传入），只记录 [from, to) 下标区间，拆分时不再 substring
+ * 2、 结果按下标写入预先分配好的输出缓冲区，不产生中间 String；输入和输出可以是同一个缓冲区（原地转换）
+ * 3、 转换逻辑通过 Transform 传入，perChar() 逐个 char 转换，perCodePoint() 按码点转换，拆分点不会落在代理对中间
+ * 4、 阈值与 ArrayRangeReduceTask 一样根据长度和并行度自动计算，叶子任务中没有 System.out.println
+ *
+ * 输出与输入等长，所以只支持长度不变的转换：码点转换前后占用的 char 数不同时（例如 BMP 字符映射到增补字符），保留原码点。
+ * String.toUpperCase() 中 "ß" -> "SS" 这类一对多的映射不在此列，这里与 Character.toUpperCase(int) 的结果一致。
+ *
+ * 超过单个数组容量的大文件用 transform(Reader, Writer, ...) 分块处理，每块复用同一个缓冲区。
+ */
+public class TextTransformTask extends RecursiveAction {
+    /**
+     * 处理 [from, to) 区间：从 source 读取，按相同下标写入 target
+     */
+    @FunctionalInterface
+    public interface Transform {
+        void apply(CharBuffer source, CharBuffer target, int from, int to);
+    }
+
+    // 与 Character.toUpperCase(int) / toLowerCase(int) 一致的大小写转换
+    public static final Transform UPPER_CASE = perCodePoint(TextTransformTask::toUpperCase);
+    public static final Transform LOWER_CASE = perCodePoint(TextTransformTask::toLowerCase);
+    // 简单大小写折叠：先转大写再转小写，使 "ſ"、"K"（开尔文符号）等与对应的 ASCII 字母折叠到同一个字符
+    public static final Transform CASE_FOLD = perCodePoint(TextTransformTask::foldCase);
+    // 日志规范化：除换行外的空白和控制字符都替换成空格，例如制表符、不换行空格、\r
+    public static final Transform NORMALIZE_WHITESPACE = perCodePoint(
+            c -> c != '\n' && (Character.isWhitespace(c) || Character.isSpaceChar(c) || Character.isISOControl(c)) ? ' ' : c);
+
+    // 分块处理 Reader 时默认每块的 char 数
+    private static final int DEFAULT_CHUNK_SIZE = 1 << 22;
+
+    private final CharBuffer source;
+    private final CharBuffer target;
+    private final int from;
+    private final int to;
+    private final int threshold;
+    private final Transform transform;
+
+    public TextTransformTask(CharBuffer source, CharBuffer target, int from, int to, int threshold,
+                             Transform transform) {
+        this.source = source;
+        this.target = target;
+        this.from = from;
+        this.to = to;
+        // 至少为 2，拆分后两边都不会为空
+        this.threshold = Math.max(2, threshold);
+        this.transform = transform;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= threshold) {
+            transform.apply(source, target, from, to);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        // 拆分点落在代理对中间时右移一位，让整个代理对留在左半部分
+        if (Character.isLowSurrogate(source.get(mid)) && Character.isHighSurrogate(source.get(mid - 1))) {
+            mid++;
+        }
+        TextTransformTask right = new TextTransformTask(source, target, mid, to, threshold, transform);
+        right.fork();
+        new TextTransformTask(source, target, from, mid, threshold, transform).compute();
+        right.join();
+    }
+
+    /**
+     * 逐个 char 转换，代理对的两半分别交给 mapper
+     */
+    public static Transform perChar(IntUnaryOperator mapper) {
+        return (source, target, from, to) -> {
+            if (hasArrays(source, target)) {
+                char[] in = source.array();
+                char[] out = target.array();
+                int inOffset = source.arrayOffset();
+                int outOffset = target.arrayOffset();
+                for (int i = from; i < to; i++) {
+                    out[outOffset + i] = (char) mapper.applyAsInt(in[inOffset + i]);
+                }
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                target.put(i, (char) mapper.applyAsInt(source.get(i)));
+            }
+        };
+    }
+
+    /**
+     * 按码点转换，代理对作为一个码点交给 mapper，不成对的代理字符按原值交给 mapper
+     */
+    public static Transform perCodePoint(IntUnaryOperator mapper) {
+        return (source, target, from, to) -> {
+            if (hasArrays(source, target)) {
+                codePoints(source.array(), source.arrayOffset(), target.array(), target.arrayOffset(), from, to, mapper);
+                return;
+            }
+            int i = from;
+            while (i < to) {
+                char c = source.get(i);
+                if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(source.get(i + 1))) {
+                    char low = source.get(i + 1);
+                    int mapped = mapper.applyAsInt(Character.toCodePoint(c, low));
+                    if (Character.isSupplementaryCodePoint(mapped)) {
+                        target.put(i, Character.highSurrogate(mapped));
+                        target.put(i + 1, Character.lowSurrogate(mapped));
+                    } else {
+                        target.put(i, c);
+                        target.put(i + 1, low);
+                    }
+                    i += 2;
+                } else {
+                    int mapped = mapper.applyAsInt(c);
+                    target.put(i, Character.isBmpCodePoint(mapped) ? (char) mapped : c);
+                    i++;
+                }
+            }
+        };
+    }
+
+    // 数组版本，省去 CharBuffer.get() / put() 每次的下标检查
+    private static void codePoints(char[] in, int inOffset, char[] out, int outOffset, int from, int to,
+                                   IntUnaryOperator mapper) {
+        int i = from;
+        while (i < to) {
+            char c = in[inOffset + i];
+            if (Character.isHighSurrogate(c) && i + 1 < to && Character.isLowSurrogate(in[inOffset + i + 1])) {
+                char low = in[inOffset + i + 1];
+                int mapped = mapper.applyAsInt(Character.toCodePoint(c, low));
+                boolean supplementary = Character.isSupplementaryCodePoint(mapped);
+                out[outOffset + i] = supplementary ? Character.highSurrogate(mapped) : c;
+                out[outOffset + i + 1] = supplementary ? Character.lowSurrogate(mapped) : low;
+                i += 2;
+            } else {
+                int mapped = mapper.applyAsInt(c);
+                out[outOffset + i] = Character.isBmpCodePoint(mapped) ? (char) mapped : c;
+                i++;
+            }
+        }
+    }
+
+    // 日志以 ASCII 为主，ASCII 字符直接计算，不查 Character 的 Unicode 属性表
+    private static int toUpperCase(int c) {
+        if (c < 0x80) {
+            return c >= 'a' && c <= 'z' ? c - ('a' - 'A') : c;
+        }
+        return Character.toUpperCase(c);
+    }
+
+    private static int toLowerCase(int c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    private static int foldCase(int c) {
+        return c < 0x80 ? toLowerCase(c) : Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static boolean hasArrays(CharBuffer source, CharBuffer target) {
+        return source.hasArray() && target.hasArray();
+    }
+
+    public static void transform(char[] source, char[] target, Transform transform) {
+        transform(CharBuffer.wrap(source), CharBuffer.wrap(target), transform, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 转换 source 的 [0, limit)，结果写入 target 的相同下标，不修改两个缓冲区的 position
+     */
+    public static void transform(CharBuffer source, CharBuffer target, Transform transform, ForkJoinPool pool) {
+        int length = source.limit();
+        if (target.limit() < length) {
+            throw new IllegalArgumentException("target is smaller than source: " + target.limit() + " < " + length);
+        }
+        int threshold = ArrayRangeReduceTask.autoThreshold(length, pool.getParallelism());
+        pool.invoke(new TextTransformTask(source, target, 0, length, threshold, transform));
+    }
+
+    public static long transform(Reader in, Writer out, Transform transform) throws IOException {
+        return transform(in, out, DEFAULT_CHUNK_SIZE, transform, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 分块读取 in，每块原地并行转换后写入 out，返回处理的 char 数；整个过程只分配一个 chunkSize 大小的缓冲区
+     * 块末尾是高代理字符时留到下一块，与对应的低代理字符一起转换
+     */
+    public static long transform(Reader in, Writer out, int chunkSize, Transform transform, ForkJoinPool pool)
+            throws IOException {
+        if (chunkSize < 2) {
+            throw new IllegalArgumentException("chunkSize must be >= 2");
+        }
+        char[] chunk = new char[chunkSize];
+        int threshold = ArrayRangeReduceTask.autoThreshold(chunkSize, pool.getParallelism());
+        long total = 0;
+        int carried = 0;
+        int read;
+        while ((read = in.read(chunk, carried, chunkSize - carried)) != -1 || carried > 0) {
+            int length = carried + Math.max(read, 0);
+            int ready = length;
+            if (read != -1 && Character.isHighSurrogate(chunk[length - 1])) {
+                ready--;
+            }
+            if (ready > 0) {
+                CharBuffer buffer = CharBuffer.wrap(chunk);
+                pool.invoke(new TextTransformTask(buffer, buffer, 0, ready, threshold, transform));
+                out.write(chunk, 0, ready);
+                total += ready;
+            }
+            carried = length - ready;
+            if (carried > 0) {
+                chunk[0] = chunk[ready];
+            }
+            if (read == -1) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    public static void main(String[] args) throws IOException {
+        // 一亿个字符：大小写折叠与 String.toLowerCase() 对比，耗时取决于 commonPool 的并行度
+        // 放在最前面运行：后面的示例使用了其他 Transform，mapper 的调用点变成多态之后 JIT 不再内联，逐字符开销会明显增加
+        char[] large = new char[100_000_000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (char) ('A' + i % 26);
+        }
+        char[] folded = new char[large.length];
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            transform(large, folded, CASE_FOLD);
+            long parallel = System.nanoTime() - start;
+            start = System.nanoTime();
+            String lower = new String(large).toLowerCase();
+            long sequential = System.nanoTime() - start;
+            System.out.println("fork/join (parallelism " + ForkJoinPool.commonPool().getParallelism() + "): "
+                    + parallel / 1_000_000 + "ms, String.toLowerCase(): " + sequential / 1_000_000 + "ms, same: "
+                    + lower.contentEquals(CharBuffer.wrap(folded)));
+        }
+
+        // 与 CustomRecursiveAction 相同的输入，包含一个增补字符（U+10428，Deseret 小写字母，大写为 U+10400）
+        char[] text = "hello world 𐐨\tstraße".toCharArray();
+        char[] result = new char[text.length];
+        transform(text, result, UPPER_CASE);
+        System.out.println(new String(result));
+
+        // 很小的阈值，保证拆分点会落在代理对附近，结果仍然正确
+        char[] emoji = new String(new char[1000]).replace("\0", "a😀").toCharArray();
+        CharBuffer buffer = CharBuffer.wrap(emoji);
+        ForkJoinPool.commonPool().invoke(new TextTransformTask(buffer, buffer, 0, emoji.length, 3, UPPER_CASE));
+        System.out.println("pairs intact: " + new String(emoji).equals(
+                new String(new char[1000]).replace("\0", "A😀")));
+
+        // 分块处理，块边界同样不会拆开代理对
+        StringWriter out = new StringWriter();
+        transform(new StringReader("Line one\r\nLine\ttwo 𐐨"), out, 5, NORMALIZE_WHITESPACE,
+                ForkJoinPool.commonPool());
+        System.out.println(out);
+    }
+}
@@ -10,7 +10,7 @@ public class TreeNode {
     Set<TreeNode> children;
 
     // 构造函数
-    TreeNode(int value, TreeNode... children) {
+    public TreeNode(int value, TreeNode... children) {
         this.value = value;
         // 将数组转换为HashSet
         this.children = new HashSet<>(Arrays.asList(children));
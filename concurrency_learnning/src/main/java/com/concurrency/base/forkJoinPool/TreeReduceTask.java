@@ -0,0 +1,110 @@
+package com.concurrency.base.forkJoinPool;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * CountingTask 的低开销版本：对树中所有节点做 LongMonoid 归约
+ *
+ * CountingTask 为每个子节点 fork 一个任务，再用 stream + Collectors.summingInt 收集，节点数上千万时大部分时间都花在调度、
+ * 创建流对象和 Integer 装箱上。这里改为：
+ * 1、 用显式栈（ArrayDeque）迭代遍历，不会因为树太深而栈溢出
+ * 2、 子树大小事先未知，采用"惰性拆分"：每顺序处理 cutoff 个节点检查一次，只有当栈里还有待处理的子树、
+ *     并且当前线程的本地队列中积压的任务不多（getSurplusQueuedTaskCount() 较小，说明其他线程可能正在空闲）时，
+ *     才把栈底的一半（离根更近、通常更大的子树）拆出去 fork，其余情况一直顺序执行
+ * 3、 累加使用基本类型 long，每个任务只在返回时装箱一次
+ *
+ * 合并顺序与单线程遍历的顺序（先节点本身，再从最后一个子节点到第一个）一致：拆出去的栈底部分在遍历顺序中位于栈里其余部分之后，
+ * 所以 fork 出的任务按与 fork 相反的顺序合并到结果的右侧，combine 只需要满足结合律，不要求交换律。
+ */
+public class TreeReduceTask extends RecursiveTask<Long> {
+    public static final int DEFAULT_CUTOFF = 1 << 12;
+    // 本地队列中积压的任务超过该值时不再拆分
+    private static final int SURPLUS_LIMIT = 3;
+
+    private final List<TreeNode> roots;
+    private final LongMonoid monoid;
+    private final int cutoff;
+
+    public TreeReduceTask(TreeNode root, LongMonoid monoid) {
+        this(Collections.singletonList(root), monoid, DEFAULT_CUTOFF);
+    }
+
+    TreeReduceTask(List<TreeNode> roots, LongMonoid monoid, int cutoff) {
+        this.roots = roots;
+        this.monoid = monoid;
+        this.cutoff = Math.max(1, cutoff);
+    }
+
+    @Override
+    protected Long compute() {
+        ArrayDeque<TreeNode> stack = new ArrayDeque<>(roots);
+        List<TreeReduceTask> forked = null;
+        long result = monoid.identity();
+        int visited = 0;
+
+        while (!stack.isEmpty()) {
+            TreeNode node = stack.pop();
+            result = monoid.combine(result, monoid.map(node.value));
+            for (TreeNode child : node.children) {
+                stack.push(child);
+            }
+            if (++visited >= cutoff) {
+                visited = 0;
+                if (stack.size() > 1 && getSurplusQueuedTaskCount() <= SURPLUS_LIMIT) {
+                    // 栈底的节点最早入栈，离根更近；反转后靠近栈顶的节点在子任务中先出栈，保持原来的遍历顺序
+                    int half = stack.size() / 2;
+                    List<TreeNode> stolen = new ArrayList<>(half);
+                    for (int i = 0; i < half; i++) {
+                        stolen.add(stack.pollLast());
+                    }
+                    Collections.reverse(stolen);
+                    TreeReduceTask task = new TreeReduceTask(stolen, monoid, cutoff);
+                    task.fork();
+                    if (forked == null) {
+                        forked = new ArrayList<>();
+                    }
+                    forked.add(task);
+                }
+            }
+        }
+
+        // 后 fork 的任务在遍历顺序中更靠前，先合并
+        if (forked != null) {
+            for (int i = forked.size() - 1; i >= 0; i--) {
+                result = monoid.combine(result, forked.get(i).join());
+            }
+        }
+        return result;
+    }
+
+    public static long reduce(TreeNode root, LongMonoid monoid) {
+        return ForkJoinPool.commonPool().invoke(new TreeReduceTask(root, monoid));
+    }
+
+    public static long reduce(TreeNode root, LongMonoid monoid, int cutoff, ForkJoinPool pool) {
+        return pool.invoke(new TreeReduceTask(Collections.singletonList(root), monoid, cutoff));
+    }
+
+    public static void main(String[] args) {
+        // 与 CountingTask 中相同的树
+        TreeNode tree = new TreeNode(5,
+                new TreeNode(3), new TreeNode(2,
+                new TreeNode(2), new TreeNode(8)));
+
+        System.out.println("sum: " + reduce(tree, LongMonoid.SUM));
+        System.out.println("max: " + reduce(tree, LongMonoid.MAX));
+        System.out.println("count: " + reduce(tree, LongMonoid.COUNT));
+
+        // 一条深度为 100 万的链，递归遍历会栈溢出
+        TreeNode chain = new TreeNode(1);
+        for (int i = 0; i < 1_000_000; i++) {
+            chain = new TreeNode(1, chain);
+        }
+        System.out.println("deep chain sum: " + reduce(chain, LongMonoid.SUM));
+    }
+}
@@ -0,0 +1,258 @@
+package com.concurrency.base.guava;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 根据任务的实际耗时决定在调用线程上直接执行还是交给线程池的执行器
+ *
+ * GuavaExecutorExample 中的 MoreExecutors.directExecutor() 在调用线程上执行任务，没有入队和线程切换，适合很短的回调；
+ * 但慢任务会卡住调用线程（可能是完成 future 的 IO 线程），嵌套的 listener 链还可能导致栈溢出。这里：
+ * 1、按任务的键（默认是任务的类，每个 lambda 各是一个类）统计执行时间的指数移动平均（EWMA），低于 inlineBudget 的直接执行，否则交给 fallback
+ * 2、交给 fallback 的任务同样计时，某类任务变快之后会重新回到直接执行
+ * 3、第一次出现的任务类型没有耗时数据，先交给 fallback 执行一次
+ * 4、在直接执行的任务中再次 execute() 时嵌套深度加一，超过 maxDepth 时交给 fallback，栈从工作线程重新开始
+ *
+ * 耗时按任务的键统计，默认的键是任务的类。作为 ListenableFuture.addListener()、Futures.transform() 和
+ * CompletableFuture.thenApplyAsync() 等方法的执行器时，提交过来的是它们内部的任务类（例如 CompletableFuture$UniApply），
+ * 所有续作会共享一份统计，一个慢的转换会把快的回调都推到 fallback，所以这类场景应通过 forKey() 为每种续作指定自己的键，
+ * 或者在构造时传入 keyExtractor。
+ * 直接执行时任务抛出的异常与 directExecutor() 一样传给调用方。
+ */
+public class AdaptiveDirectExecutor implements Executor {
+    // EWMA 中新样本的权重
+    private static final double ALPHA = 0.2;
+
+    private final Executor fallback;
+    private final long inlineBudgetNanos;
+    private final int maxDepth;
+    private final Function<? super Runnable, ?> keyExtractor;
+    private final Map<Object, TaskCost> costs = new ConcurrentHashMap<>();
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+    private final LongAdder inlined = new LongAdder();
+    private final LongAdder offloadedByCost = new LongAdder();
+    private final LongAdder offloadedByDepth = new LongAdder();
+
+    public AdaptiveDirectExecutor(Executor fallback, long inlineBudget, TimeUnit unit, int maxDepth) {
+        this(fallback, inlineBudget, unit, maxDepth, Object::getClass);
+    }
+
+    /**
+     * @param keyExtractor 从任务得到统计耗时用的键，返回值需要实现 equals() / hashCode()
+     */
+    public AdaptiveDirectExecutor(Executor fallback, long inlineBudget, TimeUnit unit, int maxDepth,
+                                  Function<? super Runnable, ?> keyExtractor) {
+        if (inlineBudget < 0 || maxDepth <= 0) {
+            throw new IllegalArgumentException("inlineBudget must be >= 0 and maxDepth must be > 0");
+        }
+        this.fallback = fallback;
+        this.inlineBudgetNanos = unit.toNanos(inlineBudget);
+        this.maxDepth = maxDepth;
+        this.keyExtractor = keyExtractor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        execute(keyExtractor.apply(task), task);
+    }
+
+    /**
+     * 按给定的键统计耗时并决定执行方式，键相同的任务共享一份统计
+     */
+    public void execute(Object key, Runnable task) {
+        TaskCost cost = costOf(key);
+        int[] current = depth.get();
+        if (current[0] >= maxDepth) {
+            offloadedByDepth.increment();
+            cost.offloaded.increment();
+            fallback.execute(() -> timed(task, cost));
+            return;
+        }
+        long estimate = cost.ewmaNanos;
+        if (estimate < 0 || estimate > inlineBudgetNanos) {
+            offloadedByCost.increment();
+            cost.offloaded.increment();
+            fallback.execute(() -> timed(task, cost));
+            return;
+        }
+        inlined.increment();
+        cost.inlined.increment();
+        current[0]++;
+        try {
+            timed(task, cost);
+        } finally {
+            current[0]--;
+        }
+    }
+
+    /**
+     * 所有任务都使用同一个键的视图，用于 Futures.transform(future, function, executor.forKey("parse")) 这类只接受 Executor 的方法
+     */
+    public Executor forKey(Object key) {
+        return task -> execute(key, task);
+    }
+
+    // 在调用线程上直接执行的任务数
+    public long getInlineCount() {
+        return inlined.sum();
+    }
+
+    // 因平均耗时超过预算（或尚无耗时数据）交给 fallback 的任务数
+    public long getOffloadedByCostCount() {
+        return offloadedByCost.sum();
+    }
+
+    // 因嵌套深度超过 maxDepth 交给 fallback 的任务数
+    public long getOffloadedByDepthCount() {
+        return offloadedByDepth.sum();
+    }
+
+    /**
+     * 每种任务类型的平均耗时和执行方式统计，按平均耗时从大到小排序
+     */
+    public List<TaskTypeStats> getTaskTypeStats() {
+        List<TaskTypeStats> stats = new ArrayList<>();
+        costs.forEach((key, cost) -> stats.add(new TaskTypeStats(
+                key instanceof Class ? ((Class<?>) key).getName() : String.valueOf(key), cost.ewmaNanos,
+                cost.inlined.sum(), cost.offloaded.sum())));
+        stats.sort((a, b) -> Long.compare(b.getAverageNanos(), a.getAverageNanos()));
+        return stats;
+    }
+
+    private TaskCost costOf(Object key) {
+        TaskCost cost = costs.get(key);
+        return cost != null ? cost : costs.computeIfAbsent(key, k -> new TaskCost());
+    }
+
+    private static void timed(Runnable task, TaskCost cost) {
+        long start = System.nanoTime();
+        try {
+            task.run();
+        } finally {
+            cost.record(System.nanoTime() - start);
+        }
+    }
+
+    private static final class TaskCost {
+        // 执行时间的指数移动平均，-1 表示还没有执行过；并发更新时可能丢失个别样本，对估计值影响可以忽略
+        private volatile long ewmaNanos = -1;
+        private final LongAdder inlined = new LongAdder();
+        private final LongAdder offloaded = new LongAdder();
+
+        void record(long nanos) {
+            long previous = ewmaNanos;
+            ewmaNanos = previous < 0 ? nanos : (long) (previous + (nanos - previous) * ALPHA);
+        }
+    }
+
+    /**
+     * 一种任务类型的统计
+     */
+    public static final class TaskTypeStats {
+        private final String type;
+        private final long averageNanos;
+        private final long inlined;
+        private final long offloaded;
+
+        TaskTypeStats(String type, long averageNanos, long inlined, long offloaded) {
+            this.type = type;
+            this.averageNanos = averageNanos;
+            this.inlined = inlined;
+            this.offloaded = offloaded;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        // 执行时间的指数移动平均，尚未执行完过时为 -1
+        public long getAverageNanos() {
+            return averageNanos;
+        }
+
+        public long getInlined() {
+            return inlined;
+        }
+
+        public long getOffloaded() {
+            return offloaded;
+        }
+
+        @Override
+        public String toString() {
+            return type + ": avg=" + (averageNanos < 0 ? "n/a" : TimeUnit.NANOSECONDS.toMicros(averageNanos) + "us")
+                    + ", inlined=" + inlined + ", offloaded=" + offloaded;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        AdaptiveDirectExecutor executor = new AdaptiveDirectExecutor(pool, 50, TimeUnit.MICROSECONDS, 32);
+        ListeningExecutorService service = MoreExecutors.listeningDecorator(pool);
+
+        // 很短的转换和一个 5 毫秒的转换交替出现：两者提交过来的都是 Guava 内部的同一个任务类，各用一个键分开统计，
+        // 短的转换第一次之后都在完成 future 的线程上直接执行，慢的转换始终交给线程池
+        Executor fast = executor.forKey("double");
+        Executor slow = executor.forKey("slow-parse");
+        List<ListenableFuture<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int value = i;
+            futures.add(Futures.transform(service.submit(() -> value), v -> v * 2, fast));
+            if (i % 100 == 0) {
+                futures.add(Futures.transform(service.submit(() -> value), v -> {
+                    try {
+                        Thread.sleep(5);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return 0;
+                }, slow));
+            }
+        }
+        System.out.println("sum: " + Futures.allAsList(futures).get().stream().mapToInt(Integer::intValue).sum());
+
+        // 与 GuavaExecutorExample 相同的 500 毫秒任务：只有第一次交给线程池时被测量到，之后始终交给线程池，调用线程不再被阻塞
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            System.out.println("slow task returned to caller after " + (System.nanoTime() - start) / 1_000_000 + "ms");
+        }
+
+        // CompletableFuture 的续作，以及在任务中继续提交任务的长链：directExecutor() 会栈溢出，这里超过 32 层后交给线程池
+        CompletableFuture<Integer> chain = CompletableFuture.completedFuture(0);
+        for (int i = 0; i < 100_000; i++) {
+            chain = chain.thenApplyAsync(v -> v + 1, executor);
+        }
+        System.out.println("chain: " + chain.get());
+        CountDownLatch recursion = new CountDownLatch(100_000);
+        new Object() {
+            void step() {
+                recursion.countDown();
+                if (recursion.getCount() > 0) {
+                    executor.execute(this::step);
+                }
+            }
+        }.step();
+        recursion.await();
+
+        System.out.println("inlined: " + executor.getInlineCount() + ", offloaded by cost: "
+                + executor.getOffloadedByCostCount() + ", offloaded by depth: " + executor.getOffloadedByDepthCount());
+        executor.getTaskTypeStats().forEach(System.out::println);
+        pool.shutdown();
+    }
+}
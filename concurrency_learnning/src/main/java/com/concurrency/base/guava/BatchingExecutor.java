@@ -0,0 +1,257 @@
+package com.concurrency.base.guava;
+
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 把大量很小的任务攒成一批再交给底层执行器的装饰器
+ *
+ * 直接 submit() 一个很小的任务时，FutureTask 的分配、一次阻塞队列入队、唤醒一个工作线程，这些开销往往比任务本身还大。
+ * 这里提交只是把任务追加到当前批次（一次加锁的 ArrayList.add），满 maxBatchSize 个或距离本批第一个任务超过 maxDelay 时，
+ * 整批作为一个 Runnable 交给底层执行器，在同一个工作线程上依次执行，队列操作和唤醒的次数降为原来的 1/maxBatchSize。
+ *
+ * execute() 不分配 Future，submit() 为每个任务返回各自的 ListenableFuture，单个任务的异常只影响它自己的 Future。
+ * 代价是延迟：任务最多额外等待 maxDelay，并且同一批中的任务串行执行。
+ */
+public class BatchingExecutor implements Executor, AutoCloseable {
+    private static final ScheduledThreadPoolExecutor SHARED_TIMER = newSharedTimer();
+
+    private final Executor delegate;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService timer;
+    private final Object lock = new Object();
+    private List<Runnable> batch;
+    // 当前批次的编号，定时刷新时用来判断自己负责的批次是否已经被提前提交
+    private long batchId;
+    // 当前批次的定时刷新，批次提前提交时取消，不在定时器队列中堆积
+    private ScheduledFuture<?> flushTimer;
+    private boolean closed;
+    private final AtomicLong batches = new AtomicLong();
+    private final LongAdder rejected = new LongAdder();
+
+    public BatchingExecutor(Executor delegate, int maxBatchSize, long maxDelay, TimeUnit unit) {
+        this(delegate, maxBatchSize, maxDelay, unit, SHARED_TIMER);
+    }
+
+    /**
+     * timer 是 ScheduledThreadPoolExecutor 时会打开它的 removeOnCancelPolicy，
+     * 否则提前满批的批次取消的定时刷新要等到期才会从队列中移除，高吞吐时每批都留下一个
+     */
+    public BatchingExecutor(Executor delegate, int maxBatchSize, long maxDelay, TimeUnit unit,
+                            ScheduledExecutorService timer) {
+        if (maxBatchSize <= 0 || maxDelay < 0) {
+            throw new IllegalArgumentException("maxBatchSize must be > 0 and maxDelay must be >= 0");
+        }
+        this.delegate = delegate;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.timer = timer;
+        if (timer instanceof ScheduledThreadPoolExecutor) {
+            ((ScheduledThreadPoolExecutor) timer).setRemoveOnCancelPolicy(true);
+        }
+        this.batch = new ArrayList<>(maxBatchSize);
+    }
+
+    /**
+     * 加入当前批次，不返回结果；批次被底层执行器拒绝时，由触发提交的调用方收到 RejectedExecutionException
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException();
+        }
+        List<Runnable> full = null;
+        long scheduleId = -1;
+        synchronized (lock) {
+            if (closed) {
+                throw new RejectedExecutionException("executor has been closed");
+            }
+            batch.add(task);
+            if (batch.size() >= maxBatchSize) {
+                full = takeBatch();
+            } else if (batch.size() == 1) {
+                scheduleId = batchId;
+            }
+        }
+        if (full != null) {
+            dispatch(full, true);
+        } else if (scheduleId >= 0) {
+            long id = scheduleId;
+            ScheduledFuture<?> scheduled = timer.schedule(() -> flush(id), maxDelayNanos, TimeUnit.NANOSECONDS);
+            synchronized (lock) {
+                if (batchId == id) {
+                    flushTimer = scheduled;
+                    scheduled = null;
+                }
+            }
+            // 安排定时刷新期间这一批已经满批提交
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+        }
+    }
+
+    public <V> ListenableFuture<V> submit(Callable<V> task) {
+        BatchedTask<V> future = new BatchedTask<>(task);
+        execute(future);
+        return future;
+    }
+
+    public ListenableFuture<?> submit(Runnable task) {
+        return submit(Executors.callable(task));
+    }
+
+    /**
+     * 立即提交当前批次
+     */
+    public void flush() {
+        List<Runnable> pending;
+        synchronized (lock) {
+            pending = batch.isEmpty() ? null : takeBatch();
+        }
+        if (pending != null) {
+            dispatch(pending, true);
+        }
+    }
+
+    // 提交剩余任务，之后不再接受新任务；不会关闭底层执行器
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+        }
+        flush();
+    }
+
+    // 交给底层执行器的批次数
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    // 因底层执行器拒绝而没有执行的任务数
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    // 定时刷新：只有当前批次仍是当初安排刷新的那一批时才提交
+    private void flush(long id) {
+        List<Runnable> pending = null;
+        synchronized (lock) {
+            if (batchId == id && !batch.isEmpty()) {
+                pending = takeBatch();
+            }
+        }
+        if (pending != null) {
+            dispatch(pending, false);
+        }
+    }
+
+    // 调用方持有 lock
+    private List<Runnable> takeBatch() {
+        List<Runnable> taken = batch;
+        batch = new ArrayList<>(maxBatchSize);
+        batchId++;
+        if (flushTimer != null) {
+            flushTimer.cancel(false);
+            flushTimer = null;
+        }
+        return taken;
+    }
+
+    private static ScheduledThreadPoolExecutor newSharedTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "batching-executor-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private void dispatch(List<Runnable> tasks, boolean rethrow) {
+        try {
+            delegate.execute(() -> runAll(tasks));
+            batches.incrementAndGet();
+        } catch (RejectedExecutionException e) {
+            rejected.add(tasks.size());
+            for (Runnable task : tasks) {
+                if (task instanceof BatchedTask) {
+                    ((BatchedTask<?>) task).reject(e);
+                }
+            }
+            if (rethrow) {
+                throw e;
+            }
+        }
+    }
+
+    private static void runAll(List<Runnable> tasks) {
+        for (Runnable task : tasks) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                // 一个任务的异常不影响同批的其他任务
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, t);
+            }
+        }
+    }
+
+    /**
+     * 批次中的一个带结果的任务，本身就是返回给调用方的 ListenableFuture
+     */
+    private static final class BatchedTask<V> extends AbstractFuture<V> implements Runnable {
+        private final Callable<V> callable;
+
+        BatchedTask(Callable<V> callable) {
+            this.callable = callable;
+        }
+
+        @Override
+        public void run() {
+            if (isDone()) {
+                return;
+            }
+            try {
+                set(callable.call());
+            } catch (Throwable t) {
+                setException(t);
+            }
+        }
+
+        void reject(RejectedExecutionException e) {
+            setException(e);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        BatchingExecutor batching = new BatchingExecutor(pool, 64, 1, TimeUnit.MILLISECONDS);
+
+        int tasks = 1_000_000;
+        LongAdder counter = new LongAdder();
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            batching.execute(counter::increment);
+        }
+        batching.flush();
+        ListenableFuture<String> last = batching.submit(() -> "last");
+        System.out.println(last.get() + ", executed: " + counter.sum() + " in "
+                + (System.nanoTime() - start) / 1_000_000 + "ms, batches: " + batching.getBatchCount()
+                + ", pending timers: " + SHARED_TIMER.getQueue().size());
+
+        // 不满一批的任务在 maxDelay 后自动提交
+        ListenableFuture<Integer> single = batching.submit(() -> 42);
+        System.out.println("single: " + single.get(1, TimeUnit.SECONDS));
+
+        batching.close();
+        pool.shutdown();
+    }
+}
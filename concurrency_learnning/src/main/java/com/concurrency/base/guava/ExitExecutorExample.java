@@ -1,6 +1,6 @@
 package com.concurrency.base.guava;
 
-import com.google.common.util.concurrent.MoreExecutors;
+import com.concurrency.base.ExecutorShutdownRegistry;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -12,16 +12,19 @@ import java.util.concurrent.TimeUnit;
  *  Guava 引入了一系列已经实例化好的执行器 （ Executor ） 服务。它们是守护线程模式，但会与 JVM 一起终止。
  *  Runtime.getRuntime().addShutdownHook() 方法用于添加一个关闭钩子，用于设置 VM 在放弃挂起的任务之前等待一段预配置的超时时间。
  *
- *  以下代码为线程池使用中，主线程关闭虚拟机，触发钩子优雅关闭线程池中的线程
+ *  以下代码为线程池使用中，主线程关闭虚拟机，触发钩子优雅关闭线程池中的线程。
+ *  有多个线程池时，每个线程池各注册一个钩子、依次等待超时，关闭时间会成倍增加，这里统一注册到 ExecutorShutdownRegistry，
+ *  只注册一个钩子，所有线程池按阶段在同一个截止时间内关闭，未开始的任务和每个线程池的关闭结果由报告交还。
  */
 public class ExitExecutorExample {
     public static void main(String[] args) {
-        // 创建固定线程池
-        ThreadPoolExecutor executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(5);
-        // 包装线程池，确保JVM关闭时，让线程池中的任务执行完毕再退出。超时时间100ms，意味着在JVM关闭后100ms内任务未完成则尝试中断
-        ExecutorService executorService = MoreExecutors.getExitingExecutorService(executor, 100, TimeUnit.MILLISECONDS);
+        ExecutorShutdownRegistry registry = new ExecutorShutdownRegistry();
+        // 创建固定线程池并注册，phase 0 的生产者先于 phase 1 的消费者关闭
+        ExecutorService producer = registry.register("producer", Executors.newFixedThreadPool(1), 0);
+        ThreadPoolExecutor executor = registry.register("worker", (ThreadPoolExecutor) Executors.newFixedThreadPool(5), 1);
+        // 不再用 MoreExecutors.getExitingExecutorService() 包装：它会为每个线程池单独注册钩子，与注册表的关闭顺序冲突
         // 执行死循环任务
-        executorService.submit(() -> {
+        executor.submit(() -> {
             try {
                 // 判断线程是否中断
                 while (!Thread.currentThread().isInterrupted()) {
@@ -33,23 +36,27 @@ public class ExitExecutorExample {
                 System.out.println("任务被中断");
             }
         });
+        // 生产者持续向工作线程池提交短任务
+        producer.execute(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                executor.execute(() -> {
+                });
+                try {
+                    Thread.sleep(10);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
 
-        // 注册JVM关闭后的钩子
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        // 注册JVM关闭后的钩子：所有线程池在 1 秒内关闭，打印每个线程池的关闭结果
+        registry.installShutdownHook(1, TimeUnit.SECONDS, report -> {
             // 作为保护线程开始标志，主线程关闭后，触发钩子函数关闭线程池
             System.out.println("JVM Shutdown Hook is running");
-            // 关闭线程池
-            executorService.shutdown();
-            try {
-                // 等待线程池完全终止，最多等待一定时间
-                if (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
-                    executorService.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-            System.out.println("线程池已关闭");
-        }));
+            System.out.println(report);
+            // 未开始的任务可以在这里持久化，交给重启后的实例
+            System.out.println("未开始的任务: " + report.getUnstartedTasks().size());
+        });
 
         // 主线程休眠一段时间，以模拟应用运行并触发关闭
         try {
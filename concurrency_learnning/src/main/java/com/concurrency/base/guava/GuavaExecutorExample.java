@@ -11,6 +11,7 @@ import java.util.stream.Collectors;
 
 /**
  * 在同一个线程中执行任务
+ * directExecutor() 不区分任务快慢，下面 500 毫秒的任务会一直阻塞调用线程；按耗时决定是否直接执行见 AdaptiveDirectExecutor
  */
 public class GuavaExecutorExample {
 
@@ -16,6 +16,8 @@ import java.util.stream.Collectors;
  *
  * 一般情况下，我们很少直接使用 ListenableFuture.addListener() 方法，而是使用 Futures 类提供的许多辅助方法。例如，通过Futures.allAsList() 方法，
  * 我们可以在单个 ListenableFuture 中组合多个 ListenableFuture 实例，并会在这些实例在成功完成后将所有的 futures 合并并返回结果。
+ *
+ * 需要观察线程池的排队时间、执行时间和失败次数时，可以换成同样返回 ListenableFuture 的 MonitoringExecutorService。
  */
 public class MonitorDecoratorExample {
     public static void main(String[] args) throws ExecutionException, InterruptedException {
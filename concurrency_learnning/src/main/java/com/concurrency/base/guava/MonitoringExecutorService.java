@@ -0,0 +1,525 @@
+package com.concurrency.base.guava;
+
+import com.concurrency.base.LatencyHistogram;
+import com.google.common.util.concurrent.ExecutionList;
+import com.google.common.util.concurrent.ForwardingListeningExecutorService;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * 带监控的 ListeningExecutorService 装饰器，用法与 MoreExecutors.listeningDecorator() 相同，返回的 ListenableFuture 可以直接交给 Futures.allAsList() 等方法组合
+ *
+ * 按标签分别统计：排队时间、执行时间（LatencyHistogram）、提交 / 成功 / 失败 / 排队前被取消的次数，以及当前排队中和执行中的任务数。
+ * 标签可以在提交时指定，不指定时使用任务的类名（lambda 去掉编译器生成的后缀，即定义它的类）。
+ * 所有计数器都是 LongAdder，直方图的每个桶也是 LongAdder，大量线程同时提交和完成任务时不会因为统计本身产生竞争。
+ *
+ * 读取方式：snapshot() 返回各标签当前数据的快照，或者 startLogging() 定期输出到 java.util.logging。
+ *
+ * 交给底层线程池的都是 MonitoredTask 或 MonitoredFutureTask，开始执行前被取消、被拒绝、或者由 shutdownNow() 返回的任务
+ * 都会从排队数中扣除并计入 abandoned；shutdownNow() 返回的任务之后由调用方执行时，仍按正常执行统计。
+ */
+public class MonitoringExecutorService extends ForwardingListeningExecutorService {
+    private static final Logger LOGGER = Logger.getLogger(MonitoringExecutorService.class.getName());
+
+    private final ListeningExecutorService delegate;
+    private final Map<String, TagStats> stats = new ConcurrentHashMap<>();
+    // invokeAll() 借用 AbstractExecutorService 的实现，任务经 newTaskFor() 包装后直接交给 delegate
+    private final ExecutorService invoker = new AbstractExecutorService() {
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new MonitoredFutureTask<>(new MonitoredTask<>(statsOf(tagOf(callable)), callable));
+        }
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+            return new MonitoredFutureTask<>(new MonitoredTask<>(statsOf(tagOf(runnable)),
+                    Executors.callable(runnable, value)));
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            try {
+                delegate.execute(command);
+            } catch (RejectedExecutionException e) {
+                if (command instanceof MonitoredFutureTask) {
+                    ((MonitoredFutureTask<?>) command).task.abandon();
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            MonitoringExecutorService.this.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return MonitoringExecutorService.this.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return MonitoringExecutorService.this.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return MonitoringExecutorService.this.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return MonitoringExecutorService.this.awaitTermination(timeout, unit);
+        }
+    };
+    private volatile ScheduledExecutorService reporter;
+
+    public MonitoringExecutorService(ExecutorService delegate) {
+        this.delegate = MoreExecutors.listeningDecorator(delegate);
+    }
+
+    @Override
+    protected ListeningExecutorService delegate() {
+        return delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        execute(tagOf(command), command);
+    }
+
+    public void execute(String tag, Runnable command) {
+        MonitoredTask<Void> task = new MonitoredTask<>(statsOf(tag), Executors.callable(command, null));
+        try {
+            delegate.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.abandon();
+            throw e;
+        }
+    }
+
+    @Override
+    public <T> ListenableFuture<T> submit(Callable<T> task) {
+        return submit(tagOf(task), task);
+    }
+
+    @Override
+    public ListenableFuture<?> submit(Runnable task) {
+        return submit(tagOf(task), Executors.callable(task));
+    }
+
+    @Override
+    public <T> ListenableFuture<T> submit(Runnable task, T result) {
+        return submit(tagOf(task), Executors.callable(task, result));
+    }
+
+    public <T> ListenableFuture<T> submit(String tag, Callable<T> callable) {
+        MonitoredFutureTask<T> future = new MonitoredFutureTask<>(new MonitoredTask<>(statsOf(tag), callable));
+        try {
+            delegate.execute(future);
+        } catch (RejectedExecutionException e) {
+            future.task.abandon();
+            throw e;
+        }
+        return future;
+    }
+
+    // invokeAll() 超时后取消、invokeAny() 得到结果后取消的任务，与 submit() 一样在 MonitoredFutureTask.done() 中计入 abandoned
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return invoker.invokeAll(tasks);
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return invoker.invokeAll(tasks, timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
+        try {
+            return doInvokeAny(tasks, false, 0);
+        } catch (TimeoutException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return doInvokeAny(tasks, true, unit.toNanos(timeout));
+    }
+
+    /**
+     * AbstractExecutorService.invokeAny() 经 ExecutorCompletionService 把任务再包一层交给线程池，
+     * 被拒绝或由 shutdownNow() 返回时无法找回 MonitoredTask，所以这里直接用 submit() 提交全部任务，
+     * 按完成顺序取第一个成功的结果，返回或失败时取消其余任务
+     */
+    private <T> T doInvokeAny(Collection<? extends Callable<T>> tasks, boolean timed, long nanos)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        if (tasks.isEmpty()) {
+            throw new IllegalArgumentException("no tasks");
+        }
+        long deadline = timed ? System.nanoTime() + nanos : 0L;
+        BlockingQueue<ListenableFuture<T>> completed = new LinkedBlockingQueue<>();
+        List<ListenableFuture<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                ListenableFuture<T> future = submit(tagOf(task), task);
+                futures.add(future);
+                future.addListener(() -> completed.add(future), MoreExecutors.directExecutor());
+            }
+            ExecutionException failure = null;
+            for (int i = 0; i < futures.size(); i++) {
+                ListenableFuture<T> future = timed
+                        ? completed.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)
+                        : completed.take();
+                if (future == null) {
+                    throw new TimeoutException();
+                }
+                try {
+                    return future.get();
+                } catch (ExecutionException e) {
+                    failure = e;
+                } catch (CancellationException e) {
+                    failure = new ExecutionException(e);
+                }
+            }
+            throw failure;
+        } finally {
+            for (ListenableFuture<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * 当前各标签统计的快照，按标签名排序
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        stats.forEach((tag, s) -> snapshots.add(s.snapshot()));
+        snapshots.sort((a, b) -> a.getTag().compareTo(b.getTag()));
+        return snapshots;
+    }
+
+    /**
+     * 每隔 period 以 INFO 级别输出一次所有标签的快照，关闭线程池时停止
+     */
+    public synchronized void startLogging(long period, TimeUnit unit) {
+        if (reporter != null) {
+            throw new IllegalStateException("logging already started");
+        }
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "executor-monitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> snapshot().forEach(s -> LOGGER.info(s.toString())), period, period, unit);
+    }
+
+    @Override
+    public void shutdown() {
+        stopLogging();
+        super.shutdown();
+    }
+
+    /**
+     * 返回的任务不会再由线程池执行，计入 abandoned
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        stopLogging();
+        List<Runnable> pending = super.shutdownNow();
+        for (Runnable r : pending) {
+            if (r instanceof MonitoredTask) {
+                ((MonitoredTask<?>) r).drain();
+            } else if (r instanceof MonitoredFutureTask) {
+                ((MonitoredFutureTask<?>) r).task.drain();
+            }
+        }
+        return pending;
+    }
+
+    private synchronized void stopLogging() {
+        if (reporter != null) {
+            reporter.shutdown();
+        }
+    }
+
+    private TagStats statsOf(String tag) {
+        TagStats s = stats.get(tag);
+        return s != null ? s : stats.computeIfAbsent(tag, TagStats::new);
+    }
+
+    // lambda 的类名形如 Foo$$Lambda$14/0x0000000800c03000，只保留定义它的类 Foo
+    static String tagOf(Object task) {
+        String name = task.getClass().getName();
+        int lambda = name.indexOf("$$Lambda");
+        return lambda >= 0 ? name.substring(0, lambda) : name;
+    }
+
+    private static final class TagStats {
+        private final String tag;
+        private final LatencyHistogram queueWait = new LatencyHistogram();
+        private final LatencyHistogram runTime = new LatencyHistogram();
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder succeeded = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder abandoned = new LongAdder();
+        private final LongAdder queued = new LongAdder();
+        private final LongAdder running = new LongAdder();
+
+        TagStats(String tag) {
+            this.tag = tag;
+        }
+
+        Snapshot snapshot() {
+            return new Snapshot(tag, submitted.sum(), succeeded.sum(), failed.sum(), abandoned.sum(),
+                    queued.sum(), running.sum(),
+                    queueWait.getValueAtPercentile(50), queueWait.getValueAtPercentile(99),
+                    runTime.getValueAtPercentile(50), runTime.getValueAtPercentile(99), runTime.getMax());
+        }
+    }
+
+    /**
+     * 包装后的任务：提交时计入排队，开始时计入执行，结束时记录耗时与结果
+     */
+    private static final class MonitoredTask<T> implements Callable<T>, Runnable {
+        private static final int NEW = 0;
+        private static final int STARTED = 1;
+        private static final int ABANDONED = 2;
+        // 由 shutdownNow() 返回，调用方仍可能自行执行
+        private static final int DRAINED = 3;
+
+        private final TagStats stats;
+        private final Callable<T> callable;
+        private final long submittedAt = System.nanoTime();
+        private final AtomicInteger state = new AtomicInteger(NEW);
+
+        MonitoredTask(TagStats stats, Callable<T> callable) {
+            this.stats = stats;
+            this.callable = callable;
+            stats.submitted.increment();
+            stats.queued.increment();
+        }
+
+        @Override
+        public T call() throws Exception {
+            if (!state.compareAndSet(NEW, STARTED)) {
+                if (!state.compareAndSet(DRAINED, STARTED)) {
+                    throw new CancellationException("task was abandoned before it started");
+                }
+                // shutdownNow() 之后由调用方执行，撤销 drain() 的计数
+                stats.abandoned.decrement();
+                stats.queued.increment();
+            }
+            long start = System.nanoTime();
+            stats.queued.decrement();
+            stats.running.increment();
+            stats.queueWait.record(start - submittedAt);
+            boolean success = false;
+            try {
+                T result = callable.call();
+                success = true;
+                return result;
+            } finally {
+                stats.runTime.record(System.nanoTime() - start);
+                stats.running.decrement();
+                if (success) {
+                    stats.succeeded.increment();
+                } else {
+                    stats.failed.increment();
+                }
+            }
+        }
+
+        // 供 execute() 使用，异常交给执行线程处理
+        @Override
+        public void run() {
+            try {
+                call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+        }
+
+        // 任务不会再执行（被拒绝或执行前被取消）
+        void abandon() {
+            if (state.compareAndSet(NEW, ABANDONED)) {
+                stats.queued.decrement();
+                stats.abandoned.increment();
+            }
+        }
+
+        void drain() {
+            if (state.compareAndSet(NEW, DRAINED)) {
+                stats.queued.decrement();
+                stats.abandoned.increment();
+            }
+        }
+    }
+
+    /**
+     * submit() 和 invokeAll() / invokeAny() 使用的 future，与 ListenableFutureTask 相同，另外保留 MonitoredTask 的引用，
+     * 开始执行前被取消时任务不会再运行，在 done() 中把它从排队数中扣除
+     */
+    private static final class MonitoredFutureTask<T> extends FutureTask<T> implements ListenableFuture<T> {
+        private final MonitoredTask<T> task;
+        private final ExecutionList listeners = new ExecutionList();
+
+        MonitoredFutureTask(MonitoredTask<T> task) {
+            super((Callable<T>) task);
+            this.task = task;
+        }
+
+        @Override
+        public void addListener(Runnable listener, Executor executor) {
+            listeners.add(listener, executor);
+        }
+
+        @Override
+        protected void done() {
+            task.abandon();
+            listeners.execute();
+        }
+    }
+
+    /**
+     * 一个标签在某一时刻的统计，时间单位为纳秒
+     */
+    public static final class Snapshot {
+        private final String tag;
+        private final long submitted;
+        private final long succeeded;
+        private final long failed;
+        private final long abandoned;
+        private final long queued;
+        private final long running;
+        private final long queueWaitP50;
+        private final long queueWaitP99;
+        private final long runTimeP50;
+        private final long runTimeP99;
+        private final long runTimeMax;
+
+        Snapshot(String tag, long submitted, long succeeded, long failed, long abandoned, long queued, long running,
+                 long queueWaitP50, long queueWaitP99, long runTimeP50, long runTimeP99, long runTimeMax) {
+            this.tag = tag;
+            this.submitted = submitted;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.abandoned = abandoned;
+            this.queued = queued;
+            this.running = running;
+            this.queueWaitP50 = queueWaitP50;
+            this.queueWaitP99 = queueWaitP99;
+            this.runTimeP50 = runTimeP50;
+            this.runTimeP99 = runTimeP99;
+            this.runTimeMax = runTimeMax;
+        }
+
+        public String getTag() {
+            return tag;
+        }
+
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        public long getSucceeded() {
+            return succeeded;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        // 被拒绝或开始执行前被取消的任务数
+        public long getAbandoned() {
+            return abandoned;
+        }
+
+        public long getQueued() {
+            return queued;
+        }
+
+        public long getRunning() {
+            return running;
+        }
+
+        public long getQueueWaitP50() {
+            return queueWaitP50;
+        }
+
+        public long getQueueWaitP99() {
+            return queueWaitP99;
+        }
+
+        public long getRunTimeP50() {
+            return runTimeP50;
+        }
+
+        public long getRunTimeP99() {
+            return runTimeP99;
+        }
+
+        public long getRunTimeMax() {
+            return runTimeMax;
+        }
+
+        @Override
+        public String toString() {
+            return tag + ": submitted=" + submitted + ", succeeded=" + succeeded + ", failed=" + failed
+                    + ", abandoned=" + abandoned + ", queued=" + queued + ", running=" + running
+                    + ", queueWait p50/p99=" + micros(queueWaitP50) + "/" + micros(queueWaitP99)
+                    + ", runTime p50/p99/max=" + micros(runTimeP50) + "/" + micros(runTimeP99) + "/" + micros(runTimeMax);
+        }
+
+        private static String micros(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos) + "us";
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        MonitoringExecutorService executor = new MonitoringExecutorService(Executors.newCachedThreadPool());
+        executor.startLogging(200, TimeUnit.MILLISECONDS);
+
+        List<ListenableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int id = i;
+            futures.add(executor.submit("fast", () -> "f" + id));
+            futures.add(executor.submit("slow", () -> {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(5, 50));
+                return "s" + id;
+            }));
+        }
+        // 与 listeningDecorator() 一样可以直接组合
+        System.out.println(Futures.allAsList(futures).get().size() + " results");
+
+        ListenableFuture<Object> failing = executor.submit("failing", () -> {
+            throw new IllegalStateException("boom");
+        });
+        Futures.successfulAsList(failing).get();
+        // 不指定标签时使用 lambda 所在的类名
+        executor.submit(() -> "untagged").get();
+
+        Thread.sleep(300);
+        executor.snapshot().forEach(System.out::println);
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,247 @@
+package com.streams;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 惰性、可拆分的码点 / 字素簇（grapheme cluster）迭代
+ *
+ * of(): 返回 IntStream，每个元素是一个 Unicode 码点，遍历过程中不创建任何对象；拆分时不会把代理对（surrogate pair）切开，
+ *       并行 flatMap 处理大文本时不再受限于对象分配。
+ * graphemes(): 按"用户感知的字符"切分，例如 "👋🏽"（手势 + 肤色修饰符）、"👨‍👩‍👧"（ZWJ 连接的家庭表情）、"🇨🇳"（两个区域指示符）、
+ *       "é"（e + 组合重音符）都算作一个字素簇。规则是 UAX #29 扩展字素簇的简化版：不处理韩文音节的组合规则，
+ *       象形符号按码点范围近似判断。
+ * forEachGrapheme(): 只回调每个字素簇在原文中的 [start, end) 下标，不创建子串。
+ */
+public final class CodePoints {
+    // 小于该长度的区间不再拆分
+    private static final int MIN_SPLIT = 1 << 10;
+    private static final int CR = '\r';
+    private static final int LF = '\n';
+    private static final int ZWJ = 0x200D;
+
+    private CodePoints() {
+    }
+
+    public static IntStream of(CharSequence text) {
+        return StreamSupport.intStream(new CodePointSpliterator(text, 0, text.length()), false);
+    }
+
+    public static Stream<String> graphemes(CharSequence text) {
+        return StreamSupport.stream(new GraphemeSpliterator(text, 0, text.length()), false);
+    }
+
+    /**
+     * 字素簇在原文中的下标区间
+     */
+    @FunctionalInterface
+    public interface RangeConsumer {
+        void accept(int start, int end);
+    }
+
+    public static void forEachGrapheme(CharSequence text, RangeConsumer action) {
+        int index = 0;
+        int length = text.length();
+        while (index < length) {
+            int next = nextGraphemeEnd(text, index, length);
+            action.accept(index, next);
+            index = next;
+        }
+    }
+
+    private static final class CodePointSpliterator implements Spliterator.OfInt {
+        private final CharSequence text;
+        private int index;
+        private final int end;
+
+        CodePointSpliterator(CharSequence text, int index, int end) {
+            this.text = text;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(IntConsumer action) {
+            if (index >= end) {
+                return false;
+            }
+            int codePoint = codePointAt(text, index, end);
+            index += Character.charCount(codePoint);
+            action.accept(codePoint);
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(IntConsumer action) {
+            while (index < end) {
+                int codePoint = codePointAt(text, index, end);
+                index += Character.charCount(codePoint);
+                action.accept(codePoint);
+            }
+        }
+
+        @Override
+        public Spliterator.OfInt trySplit() {
+            if (end - index < MIN_SPLIT) {
+                return null;
+            }
+            int mid = index + (end - index) / 2;
+            // 不能把代理对切开
+            if (Character.isLowSurrogate(text.charAt(mid)) && Character.isHighSurrogate(text.charAt(mid - 1))) {
+                mid++;
+            }
+            CodePointSpliterator prefix = new CodePointSpliterator(text, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | (text instanceof String ? IMMUTABLE : 0);
+        }
+    }
+
+    private static final class GraphemeSpliterator implements Spliterator<String> {
+        private final CharSequence text;
+        private int index;
+        private final int end;
+
+        GraphemeSpliterator(CharSequence text, int index, int end) {
+            this.text = text;
+            this.index = index;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super String> action) {
+            if (index >= end) {
+                return false;
+            }
+            int next = nextGraphemeEnd(text, index, end);
+            action.accept(text.subSequence(index, next).toString());
+            index = next;
+            return true;
+        }
+
+        @Override
+        public Spliterator<String> trySplit() {
+            if (end - index < MIN_SPLIT) {
+                return null;
+            }
+            int mid = index + (end - index) / 2;
+            if (Character.isLowSurrogate(text.charAt(mid)) && Character.isHighSurrogate(text.charAt(mid - 1))) {
+                mid++;
+            }
+            while (mid < end && !isBoundary(text, mid)) {
+                mid += Character.charCount(Character.codePointAt(text, mid));
+            }
+            if (mid >= end) {
+                return null;
+            }
+            GraphemeSpliterator prefix = new GraphemeSpliterator(text, index, mid);
+            index = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return end - index;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL | (text instanceof String ? IMMUTABLE : 0);
+        }
+    }
+
+    // 从 start 开始的字素簇的结束下标
+    static int nextGraphemeEnd(CharSequence text, int start, int end) {
+        int previous = codePointAt(text, start, end);
+        int index = start + Character.charCount(previous);
+        int regionalIndicators = isRegionalIndicator(previous) ? 1 : 0;
+        while (index < end) {
+            int current = codePointAt(text, index, end);
+            if (!joins(previous, current, regionalIndicators)) {
+                break;
+            }
+            regionalIndicators = isRegionalIndicator(current) ? regionalIndicators + 1 : 0;
+            index += Character.charCount(current);
+            previous = current;
+        }
+        return index;
+    }
+
+    // index 处（一个码点的开头）是否一定是字素簇的边界，用于拆分
+    private static boolean isBoundary(CharSequence text, int index) {
+        int current = Character.codePointAt(text, index);
+        int previous = Character.codePointBefore(text, index);
+        // 连续的区域指示符需要从头数奇偶性才能确定边界，拆分时直接跳过
+        return !joins(previous, current, 0) && !(isRegionalIndicator(previous) && isRegionalIndicator(current));
+    }
+
+    private static boolean joins(int previous, int current, int regionalIndicators) {
+        if (previous == CR) {
+            return current == LF;
+        }
+        if (previous == LF || current == CR || current == LF) {
+            return false;
+        }
+        if (isExtend(current) || current == ZWJ) {
+            return true;
+        }
+        if (previous == ZWJ && isPictographic(current)) {
+            return true;
+        }
+        // 区域指示符两两组成一面旗帜
+        return isRegionalIndicator(current) && regionalIndicators % 2 == 1;
+    }
+
+    private static boolean isExtend(int codePoint) {
+        int type = Character.getType(codePoint);
+        return type == Character.NON_SPACING_MARK
+                || type == Character.ENCLOSING_MARK
+                || type == Character.COMBINING_SPACING_MARK
+                || (codePoint >= 0xFE00 && codePoint <= 0xFE0F)      // 变体选择符
+                || (codePoint >= 0x1F3FB && codePoint <= 0x1F3FF)    // 肤色修饰符
+                || (codePoint >= 0xE0020 && codePoint <= 0xE007F)    // 标签字符
+                || (codePoint >= 0xE0100 && codePoint <= 0xE01EF);
+    }
+
+    private static boolean isPictographic(int codePoint) {
+        return (codePoint >= 0x1F000 && codePoint <= 0x1FAFF)
+                || (codePoint >= 0x2600 && codePoint <= 0x27BF)
+                || (codePoint >= 0x2300 && codePoint <= 0x23FF);
+    }
+
+    private static boolean isRegionalIndicator(int codePoint) {
+        return codePoint >= 0x1F1E6 && codePoint <= 0x1F1FF;
+    }
+
+    // 区间末尾孤立的高代理按单个 char 处理，不越过区间边界
+    private static int codePointAt(CharSequence text, int index, int end) {
+        char high = text.charAt(index);
+        if (Character.isHighSurrogate(high) && index + 1 < end) {
+            char low = text.charAt(index + 1);
+            if (Character.isLowSurrogate(low)) {
+                return Character.toCodePoint(high, low);
+            }
+        }
+        return high;
+    }
+
+    public static void main(String[] args) {
+        String s = "hello 👋🏽 é 👨‍👩‍👧 🇨🇳";
+        System.out.println("chars: " + s.length() + ", code points: " + of(s).count() + ", graphemes: " + graphemes(s).count());
+        graphemes(s).forEach(g -> System.out.print("[" + g + "]"));
+        System.out.println();
+    }
+}
@@ -0,0 +1,74 @@
+package com.streams;
+
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Statistics 的线程安全版本，供 CONCURRENT 收集器在并行流中共享同一个实例，省去每个分段单独累加再合并的步骤
+ *
+ * 各个字段用 LongAdder / DoubleAdder / DoubleAccumulator 分散竞争。
+ * 方差由 "平方和 - 和的平方 / n" 计算，数值稳定性不如 Statistics 的 Welford 算法，数据均值远大于标准差时应使用 Statistics。
+ */
+public class ConcurrentStatistics implements DoubleConsumer {
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder sum = new DoubleAdder();
+    private final DoubleAdder sumOfSquares = new DoubleAdder();
+    private final DoubleAccumulator min = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final DoubleAccumulator max = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+
+    @Override
+    public void accept(double value) {
+        count.increment();
+        sum.add(value);
+        sumOfSquares.add(value * value);
+        min.accumulate(value);
+        max.accumulate(value);
+    }
+
+    public ConcurrentStatistics combine(ConcurrentStatistics other) {
+        count.add(other.count.sum());
+        sum.add(other.sum.sum());
+        sumOfSquares.add(other.sumOfSquares.sum());
+        min.accumulate(other.min.get());
+        max.accumulate(other.max.get());
+        return this;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSum() {
+        return sum.sum();
+    }
+
+    public double getAverage() {
+        long n = getCount();
+        return n == 0 ? 0.0 : getSum() / n;
+    }
+
+    public double getMin() {
+        return min.get();
+    }
+
+    public double getMax() {
+        return max.get();
+    }
+
+    public double getVariance() {
+        long n = getCount();
+        if (n == 0) {
+            return 0.0;
+        }
+        double mean = getSum() / n;
+        return Math.max(0.0, sumOfSquares.sum() / n - mean * mean);
+    }
+
+    @Override
+    public String toString() {
+        return "ConcurrentStatistics{count=" + getCount() + ", sum=" + getSum() + ", min=" + getMin()
+                + ", max=" + getMax() + ", average=" + getAverage() + ", variance=" + getVariance() + "}";
+    }
+}
@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
-import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
@@ -43,6 +42,10 @@ public class CreatingStreams {
         // Stream.of 产生一个给定值的流,其中参数可以是"T..."  Stream.empty 产生一个不包含任何元素的流
         Stream<String> words = Stream.of(contents.split("\\PL+"));
         show("words",words);
+        // 流式分词：通过固定大小的缓冲区读取文件并逐个切出单词，不需要像上面那样先把整个文件读成 String，.parallel() 时按字节区间拆分
+        try (Stream<String> streamingWords = WordSpliterator.words(path)) {
+            show("streamingWords", streamingWords);
+        }
         Stream<String> song = Stream.of("gently", "down", "the", "stream");
         show("song",song);
         Stream<Object> empty = Stream.empty();
@@ -186,18 +189,8 @@ public class CreatingStreams {
      * 对于字符串 "Hello 👋"，该方法将分别输出 "H", "e", "l", "l", "o", " ", 和 "👋"
      */
     public static Stream<String> codePoints(String s){
-        //存储字符串中的每一个Unicode码点
-        ArrayList<String> result = new ArrayList<>();
-        int i = 0;
-        //将字符串拆分为其组成的各个Unicode字符，这对于处理多字节字符集（如表情符号或其他非拉丁字符）尤其有用。
-        while (i < s.length()){
-            //计算从位置 i 开始的第一个码点的结束位置。这是必要的因为某些Unicode字符可能由多个Java char 值组成（如代理对）
-            int j = s.offsetByCodePoints(i, 1);
-            //提取字符串，这段子字符串代表一个完整的Unicode码点
-            result.add(s.substring(i,j));
-            //更新索引
-            i = j;
-        }
-        return result.stream();
+        // 惰性地逐个码点生成，不再预先为每个字符 substring 并存入 ArrayList；只需要码点本身时直接使用 CodePoints.of(s) 得到的 IntStream
+        // 某些Unicode字符可能由多个Java char 值组成（如代理对），CodePoints 保证不会把它们拆开
+        return CodePoints.of(s).mapToObj(codePoint -> new String(Character.toChars(codePoint)));
     }
 }
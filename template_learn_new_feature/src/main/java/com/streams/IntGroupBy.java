@@ -0,0 +1,323 @@
+package com.streams;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * 基于 int 键列的分组聚合，供 PersonTable 这类列式数据使用
+ *
+ * 键的取值范围 [minKey, maxKey] 不超过 DENSE_MAX_RANGE 时（如年龄）使用稠密数组，下标就是 key - minKey，
+ * 内层循环只有数组读写，没有哈希和分支；否则使用 IntLongHashMap / IntObjectHashMap。
+ * 行区间 [from, to) 通过 fork/join 拆分，每个叶子任务有自己的部分结果，join 时合并，叶子之间没有共享状态。
+ *
+ * [minKey, maxKey] 必须覆盖 keys[from, to) 中的所有键，否则抛出 IllegalArgumentException 并给出越界的键，
+ * 检查在叶子任务的循环中顺带完成，不需要额外扫描一遍。
+ */
+public final class IntGroupBy {
+    // 每个叶子任务各有一份稠密数组，long[4096] 为 32KB，能放进 L2 缓存
+    static final int DENSE_MAX_RANGE = 1 << 12;
+    private static final int MIN_THRESHOLD = 4096;
+
+    private IntGroupBy() {
+    }
+
+    // 每个键的行数，键超出 [minKey, maxKey] 时抛出 IllegalArgumentException
+    public static IntLongHashMap count(int[] keys, int from, int to, int minKey, int maxKey, ForkJoinPool pool) {
+        return sum(keys, null, from, to, minKey, maxKey, pool);
+    }
+
+    // 每个键对应的 values 之和，values 为 null 时等同于 count；键超出 [minKey, maxKey] 时抛出 IllegalArgumentException
+    public static IntLongHashMap sum(int[] keys, int[] values, int from, int to, int minKey, int maxKey,
+                                     ForkJoinPool pool) {
+        checkRange(keys, from, to);
+        boolean dense = isDense(minKey, maxKey);
+        LongPartial partial = pool.invoke(
+                new SumTask(keys, values, from, to, minKey, maxKey, dense ? maxKey - minKey + 1 : 0,
+                        threshold(to - from, pool.getParallelism())));
+        return partial.toMap(minKey);
+    }
+
+    // 每个键对应的行号，行号按升序排列，即与顺序流中的遇到顺序一致；键超出 [minKey, maxKey] 时抛出 IllegalArgumentException
+    public static IntObjectHashMap<int[]> rows(int[] keys, int from, int to, int minKey, int maxKey,
+                                               ForkJoinPool pool) {
+        checkRange(keys, from, to);
+        boolean dense = isDense(minKey, maxKey);
+        RowsPartial partial = pool.invoke(
+                new RowsTask(keys, from, to, minKey, maxKey, dense ? maxKey - minKey + 1 : 0,
+                        threshold(to - from, pool.getParallelism())));
+        return partial.toMap(minKey);
+    }
+
+    static boolean isDense(int minKey, int maxKey) {
+        return (long) maxKey - minKey + 1 <= DENSE_MAX_RANGE;
+    }
+
+    // 每个工作线程大约分到 4 个叶子任务
+    private static int threshold(int length, int parallelism) {
+        return Math.max(MIN_THRESHOLD, length / (parallelism * 4));
+    }
+
+    private static void checkRange(int[] keys, int from, int to) {
+        if (from < 0 || to > keys.length || from > to) {
+            throw new IndexOutOfBoundsException("from=" + from + ", to=" + to + ", length=" + keys.length);
+        }
+    }
+
+    // 在叶子任务中抛出，pool.invoke() 会以同样的类型重新抛给调用方
+    private static IllegalArgumentException keyOutOfRange(int key, int minKey, int maxKey) {
+        return new IllegalArgumentException("key " + key + " out of range [" + minKey + ", " + maxKey + "]");
+    }
+
+    /**
+     * 求和的部分结果，dense 和 hash 二选一
+     * 稠密求和时和为 0 不代表键不存在（例如年龄都是 0），present 按位记录出现过的键；计数时 dense 本身就是出现次数，present 为 null
+     */
+    private static final class LongPartial {
+        final long[] dense;
+        final long[] present;
+        final IntLongHashMap hash;
+
+        LongPartial(long[] dense, long[] present, IntLongHashMap hash) {
+            this.dense = dense;
+            this.present = present;
+            this.hash = hash;
+        }
+
+        LongPartial merge(LongPartial other) {
+            if (dense != null) {
+                for (int i = 0; i < dense.length; i++) {
+                    dense[i] += other.dense[i];
+                }
+                if (present != null) {
+                    for (int i = 0; i < present.length; i++) {
+                        present[i] |= other.present[i];
+                    }
+                }
+                return this;
+            }
+            // 把较小的表合并到较大的表中
+            return hash.size() >= other.hash.size() ? new LongPartial(null, null, hash.mergeFrom(other.hash))
+                    : new LongPartial(null, null, other.hash.mergeFrom(hash));
+        }
+
+        IntLongHashMap toMap(int minKey) {
+            if (hash != null) {
+                return hash;
+            }
+            IntLongHashMap map = new IntLongHashMap();
+            for (int i = 0; i < dense.length; i++) {
+                if (present == null ? dense[i] != 0 : (present[i >>> 6] & 1L << i) != 0) {
+                    map.put(minKey + i, dense[i]);
+                }
+            }
+            return map;
+        }
+    }
+
+    private static final class SumTask extends RecursiveTask<LongPartial> {
+        private final int[] keys;
+        private final int[] values;
+        private final int from;
+        private final int to;
+        private final int minKey;
+        private final int maxKey;
+        // 0 表示使用哈希表
+        private final int denseRange;
+        private final int threshold;
+
+        SumTask(int[] keys, int[] values, int from, int to, int minKey, int maxKey, int denseRange, int threshold) {
+            this.keys = keys;
+            this.values = values;
+            this.from = from;
+            this.to = to;
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+            this.denseRange = denseRange;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected LongPartial compute() {
+            if (to - from <= threshold) {
+                return denseRange > 0 ? computeDense() : computeHash();
+            }
+            int mid = (from + to) >>> 1;
+            SumTask left = new SumTask(keys, values, from, mid, minKey, maxKey, denseRange, threshold);
+            SumTask right = new SumTask(keys, values, mid, to, minKey, maxKey, denseRange, threshold);
+            left.fork();
+            LongPartial rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+
+        private LongPartial computeDense() {
+            long[] sums = new long[denseRange];
+            int[] keys = this.keys;
+            int minKey = this.minKey;
+            int denseRange = this.denseRange;
+            // 范围不超过 DENSE_MAX_RANGE，key - minKey 即使溢出也一定落在 [0, denseRange) 之外
+            if (values == null) {
+                for (int i = from; i < to; i++) {
+                    int slot = keys[i] - minKey;
+                    if (slot < 0 || slot >= denseRange) {
+                        throw keyOutOfRange(keys[i], minKey, maxKey);
+                    }
+                    sums[slot]++;
+                }
+                return new LongPartial(sums, null, null);
+            }
+            int[] values = this.values;
+            long[] present = new long[(denseRange + 63) >>> 6];
+            for (int i = from; i < to; i++) {
+                int slot = keys[i] - minKey;
+                if (slot < 0 || slot >= denseRange) {
+                    throw keyOutOfRange(keys[i], minKey, maxKey);
+                }
+                sums[slot] += values[i];
+                present[slot >>> 6] |= 1L << slot;
+            }
+            return new LongPartial(sums, present, null);
+        }
+
+        private LongPartial computeHash() {
+            IntLongHashMap sums = new IntLongHashMap();
+            for (int i = from; i < to; i++) {
+                int key = keys[i];
+                if (key < minKey || key > maxKey) {
+                    throw keyOutOfRange(key, minKey, maxKey);
+                }
+                sums.addTo(key, values == null ? 1L : values[i]);
+            }
+            return new LongPartial(null, null, sums);
+        }
+    }
+
+    /**
+     * 可增长的 int 数组，存放一个分组内的行号
+     */
+    private static final class IntList {
+        int[] elements = new int[8];
+        int size;
+
+        void add(int value) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size << 1);
+            }
+            elements[size++] = value;
+        }
+
+        // 右侧分段的行号都大于左侧，直接追加即可保持升序
+        IntList append(IntList other) {
+            if (size + other.size > elements.length) {
+                elements = Arrays.copyOf(elements, Math.max(size + other.size, size << 1));
+            }
+            System.arraycopy(other.elements, 0, elements, size, other.size);
+            size += other.size;
+            return this;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(elements, size);
+        }
+    }
+
+    /**
+     * 分组行号的部分结果，dense 和 hash 二选一
+     */
+    private static final class RowsPartial {
+        final IntList[] dense;
+        final IntObjectHashMap<IntList> hash;
+
+        RowsPartial(IntList[] dense, IntObjectHashMap<IntList> hash) {
+            this.dense = dense;
+            this.hash = hash;
+        }
+
+        // other 是右侧分段
+        RowsPartial merge(RowsPartial other) {
+            if (dense != null) {
+                for (int i = 0; i < dense.length; i++) {
+                    if (other.dense[i] != null) {
+                        dense[i] = dense[i] == null ? other.dense[i] : dense[i].append(other.dense[i]);
+                    }
+                }
+            } else {
+                other.hash.forEach((key, rows) -> {
+                    IntList existing = hash.get(key);
+                    hash.put(key, existing == null ? rows : existing.append(rows));
+                });
+            }
+            return this;
+        }
+
+        IntObjectHashMap<int[]> toMap(int minKey) {
+            IntObjectHashMap<int[]> map = new IntObjectHashMap<>();
+            if (dense != null) {
+                for (int i = 0; i < dense.length; i++) {
+                    if (dense[i] != null) {
+                        map.put(minKey + i, dense[i].toArray());
+                    }
+                }
+            } else {
+                hash.forEach((key, rows) -> map.put(key, rows.toArray()));
+            }
+            return map;
+        }
+    }
+
+    private static final class RowsTask extends RecursiveTask<RowsPartial> {
+        private final int[] keys;
+        private final int from;
+        private final int to;
+        private final int minKey;
+        private final int maxKey;
+        private final int denseRange;
+        private final int threshold;
+
+        RowsTask(int[] keys, int from, int to, int minKey, int maxKey, int denseRange, int threshold) {
+            this.keys = keys;
+            this.from = from;
+            this.to = to;
+            this.minKey = minKey;
+            this.maxKey = maxKey;
+            this.denseRange = denseRange;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected RowsPartial compute() {
+            if (to - from <= threshold) {
+                if (denseRange > 0) {
+                    IntList[] groups = new IntList[denseRange];
+                    for (int i = from; i < to; i++) {
+                        int slot = keys[i] - minKey;
+                        if (slot < 0 || slot >= denseRange) {
+                            throw keyOutOfRange(keys[i], minKey, maxKey);
+                        }
+                        IntList rows = groups[slot];
+                        if (rows == null) {
+                            rows = groups[slot] = new IntList();
+                        }
+                        rows.add(i);
+                    }
+                    return new RowsPartial(groups, null);
+                }
+                IntObjectHashMap<IntList> groups = new IntObjectHashMap<>();
+                for (int i = from; i < to; i++) {
+                    int key = keys[i];
+                    if (key < minKey || key > maxKey) {
+                        throw keyOutOfRange(key, minKey, maxKey);
+                    }
+                    groups.computeIfAbsent(key, k -> new IntList()).add(i);
+                }
+                return new RowsPartial(null, groups);
+            }
+            int mid = (from + to) >>> 1;
+            RowsTask left = new RowsTask(keys, from, mid, minKey, maxKey, denseRange, threshold);
+            RowsTask right = new RowsTask(keys, mid, to, minKey, maxKey, denseRange, threshold);
+            left.fork();
+            RowsPartial rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+    }
+}
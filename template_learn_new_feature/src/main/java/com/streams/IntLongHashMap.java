@@ -0,0 +1,126 @@
+package com.streams;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * int -> long 的开放寻址哈希表（线性探测），键和值都是基本类型，没有 Integer / Long 装箱，也没有 HashMap.Node
+ * 非线程安全
+ */
+public class IntLongHashMap {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    @FunctionalInterface
+    public interface IntLongConsumer {
+        void accept(int key, long value);
+    }
+
+    private int[] keys;
+    private long[] values;
+    private boolean[] used;
+    private int size;
+    private int mask;
+
+    public IntLongHashMap() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    // 累加并返回累加后的值，键不存在时从 0 开始
+    public long addTo(int key, long delta) {
+        int index = indexOf(key);
+        if (used[index]) {
+            return values[index] += delta;
+        }
+        used[index] = true;
+        keys[index] = key;
+        values[index] = delta;
+        if (++size > (mask + 1) >> 1) {
+            rehash();
+        }
+        return delta;
+    }
+
+    public void put(int key, long value) {
+        int index = indexOf(key);
+        if (used[index]) {
+            values[index] = value;
+        } else {
+            addTo(key, value);
+        }
+    }
+
+    public long getOrDefault(int key, long defaultValue) {
+        int index = indexOf(key);
+        return used[index] ? values[index] : defaultValue;
+    }
+
+    public boolean containsKey(int key) {
+        return used[indexOf(key)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public IntLongHashMap mergeFrom(IntLongHashMap other) {
+        other.forEach(this::addTo);
+        return this;
+    }
+
+    public void forEach(IntLongConsumer action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    // 转换成装箱的 Map，便于与 JDK Collectors 的结果比较
+    public Map<Integer, Long> toMap() {
+        Map<Integer, Long> map = new HashMap<>(size * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    // 键所在的槽位，或者应该插入的空槽位
+    private int indexOf(int key) {
+        int index = mix(key) & mask;
+        while (used[index] && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int index = indexOf(oldKeys[i]);
+                used[index] = true;
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new long[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    // 连续的小整数（如年龄）直接取低位会聚集在一起，先打散
+    static int mix(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
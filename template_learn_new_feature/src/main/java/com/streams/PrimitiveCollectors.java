@@ -0,0 +1,143 @@
+package com.streams;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * 基本类型特化的收集器，对应 CollectorsStreams 中演示的 JDK Collectors
+ *
+ * countingByInt / summingLongByInt: 按 int 键分组计数 / 求和，结果是 IntLongHashMap，相当于 groupingBy(key, counting()) 但没有装箱
+ * groupingByInt:                    按 int 键分组并交给下游收集器，分组表是 IntObjectHashMap
+ * statistics:                       一次遍历得到 count / sum / min / max / average / variance
+ * concurrentCountingByInt / concurrentStatistics:
+ *                                   带 CONCURRENT 和 UNORDERED 特征，并行流中所有线程共享同一个线程安全的容器，不再有分段合并
+ */
+public final class PrimitiveCollectors {
+
+    private PrimitiveCollectors() {
+    }
+
+    public static <T> Collector<T, ?, IntLongHashMap> countingByInt(ToIntFunction<? super T> classifier) {
+        return Collector.of(IntLongHashMap::new,
+                (map, t) -> map.addTo(classifier.applyAsInt(t), 1L),
+                IntLongHashMap::mergeFrom,
+                Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    public static <T> Collector<T, ?, IntLongHashMap> summingLongByInt(ToIntFunction<? super T> classifier,
+                                                                      ToLongFunction<? super T> mapper) {
+        return Collector.of(IntLongHashMap::new,
+                (map, t) -> map.addTo(classifier.applyAsInt(t), mapper.applyAsLong(t)),
+                IntLongHashMap::mergeFrom,
+                Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    public static <T, A, R> Collector<T, ?, IntObjectHashMap<R>> groupingByInt(ToIntFunction<? super T> classifier,
+                                                                             Collector<? super T, A, R> downstream) {
+        Supplier<A> downstreamSupplier = downstream.supplier();
+        BiConsumer<A, ? super T> downstreamAccumulator = downstream.accumulator();
+        BinaryOperator<A> downstreamCombiner = downstream.combiner();
+        Function<A, R> downstreamFinisher = downstream.finisher();
+
+        BiConsumer<IntObjectHashMap<A>, T> accumulator = (map, t) ->
+                downstreamAccumulator.accept(map.computeIfAbsent(classifier.applyAsInt(t), k -> downstreamSupplier.get()), t);
+        BinaryOperator<IntObjectHashMap<A>> combiner = (left, right) -> {
+            right.forEach((key, value) -> {
+                A existing = left.get(key);
+                left.put(key, existing == null ? value : downstreamCombiner.apply(existing, value));
+            });
+            return left;
+        };
+        Function<IntObjectHashMap<A>, IntObjectHashMap<R>> finisher = map -> {
+            IntObjectHashMap<R> result = new IntObjectHashMap<>();
+            map.forEach((key, value) -> result.put(key, downstreamFinisher.apply(value)));
+            return result;
+        };
+        return Collector.of(IntObjectHashMap::new, accumulator, combiner, finisher);
+    }
+
+    public static <T> Collector<T, ?, Statistics> statistics(ToDoubleFunction<? super T> mapper) {
+        return Collector.of(Statistics::new,
+                (stats, t) -> stats.accept(mapper.applyAsDouble(t)),
+                Statistics::combine,
+                Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    public static <T> Collector<T, ?, ConcurrentStatistics> concurrentStatistics(ToDoubleFunction<? super T> mapper) {
+        return Collector.of(ConcurrentStatistics::new,
+                (stats, t) -> stats.accept(mapper.applyAsDouble(t)),
+                ConcurrentStatistics::combine,
+                Collector.Characteristics.CONCURRENT,
+                Collector.Characteristics.UNORDERED,
+                Collector.Characteristics.IDENTITY_FINISH);
+    }
+
+    /**
+     * 键的取值范围已知且较小时（如年龄）使用，每个键对应一个 LongAdder，键超出 [minKey, maxKey] 时抛出 IllegalArgumentException
+     */
+    public static <T> Collector<T, ?, IntLongHashMap> concurrentCountingByInt(ToIntFunction<? super T> classifier,
+                                                                             int minKey, int maxKey) {
+        if (maxKey < minKey) {
+            throw new IllegalArgumentException("maxKey < minKey");
+        }
+        return Collector.<T, LongAdder[], IntLongHashMap>of(
+                () -> {
+                    LongAdder[] adders = new LongAdder[maxKey - minKey + 1];
+                    for (int i = 0; i < adders.length; i++) {
+                        adders[i] = new LongAdder();
+                    }
+                    return adders;
+                },
+                (adders, t) -> {
+                    int key = classifier.applyAsInt(t);
+                    if (key < minKey || key > maxKey) {
+                        throw new IllegalArgumentException("key out of range: " + key);
+                    }
+                    adders[key - minKey].increment();
+                },
+                (left, right) -> {
+                    for (int i = 0; i < left.length; i++) {
+                        left[i].add(right[i].sum());
+                    }
+                    return left;
+                },
+                adders -> {
+                    IntLongHashMap result = new IntLongHashMap();
+                    for (int i = 0; i < adders.length; i++) {
+                        long count = adders[i].sum();
+                        if (count > 0) {
+                            result.put(minKey + i, count);
+                        }
+                    }
+                    return result;
+                },
+                Collector.Characteristics.CONCURRENT,
+                Collector.Characteristics.UNORDERED);
+    }
+
+    public static void main(String[] args) {
+        List<Integer> list = Arrays.asList(1, 2, 3, 4);
+        // 一次遍历代替 averagingDouble / summingInt / counting / max / min
+        Statistics stats = list.stream().collect(statistics(d -> d * 2));
+        System.out.println("statistics: " + stats);
+        System.out.println("concurrentStatistics: " + list.parallelStream().collect(concurrentStatistics(d -> d * 2)));
+
+        List<Person> personList = Person.getList();
+        System.out.println("countingByInt: " + personList.stream().collect(countingByInt(Person::getAge)));
+        System.out.println("concurrentCountingByInt: "
+                + personList.parallelStream().collect(concurrentCountingByInt(Person::getAge, 0, 150)));
+        IntObjectHashMap<String> nameByAge = personList.stream()
+                .collect(groupingByInt(Person::getAge, Collectors.mapping(Person::getName, Collectors.joining(","))));
+        nameByAge.forEach((k, v) -> System.out.println("Age:" + k + "  Persons: " + v));
+    }
+}
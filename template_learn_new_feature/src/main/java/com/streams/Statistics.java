@@ -0,0 +1,96 @@
+package com.streams;
+
+import java.util.function.DoubleConsumer;
+
+/**
+ * 一次遍历同时计算 count / sum / min / max / average / variance
+ *
+ * averagingDouble、summingInt、counting、max、min 各自遍历一遍流，这里合并成一遍。
+ * 方差使用 Welford 在线算法，合并两个分段时使用 Chan 的并行公式，数值上比 "平方和 - 和的平方" 稳定。
+ * 非线程安全，并行流中每个分段各自累加后通过 combine() 合并。
+ */
+public class Statistics implements DoubleConsumer {
+    private long count;
+    private double sum;
+    private double mean;
+    // 与均值之差的平方和
+    private double m2;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    @Override
+    public void accept(double value) {
+        count++;
+        sum += value;
+        double delta = value - mean;
+        mean += delta / count;
+        m2 += delta * (value - mean);
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public Statistics combine(Statistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (count == 0) {
+            count = other.count;
+            sum = other.sum;
+            mean = other.mean;
+            m2 = other.m2;
+            min = other.min;
+            max = other.max;
+            return this;
+        }
+        long total = count + other.count;
+        double delta = other.mean - mean;
+        m2 += other.m2 + delta * delta * count * other.count / total;
+        mean += delta * other.count / total;
+        count = total;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    // 与 Collectors.averagingDouble() 一致，没有元素时返回 0
+    public double getAverage() {
+        return count == 0 ? 0.0 : mean;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    // 总体方差
+    public double getVariance() {
+        return count == 0 ? 0.0 : m2 / count;
+    }
+
+    // 样本方差
+    public double getSampleVariance() {
+        return count < 2 ? 0.0 : m2 / (count - 1);
+    }
+
+    public double getStandardDeviation() {
+        return Math.sqrt(getVariance());
+    }
+
+    @Override
+    public String toString() {
+        return "Statistics{count=" + count + ", sum=" + sum + ", min=" + min + ", max=" + max
+                + ", average=" + getAverage() + ", variance=" + getVariance() + "}";
+    }
+}
@@ -0,0 +1,179 @@
+package com.streams;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * 单词 -> 次数 的开放寻址哈希表（线性探测），计数保存在 long[] 中，不使用 Long 装箱
+ *
+ * 查找时直接以 CharSequence 为键，哈希值与 String.hashCode() 的算法相同，只有第一次出现的单词才会 toString() 生成新的 String，
+ * 配合 WordSpliterator.forEachWord() 复用的 CharSequence，重复的单词不会产生任何分配。
+ * 非线程安全：每个线程使用自己的 WordCountMap，最后再通过 mergeFrom() 合并。
+ */
+public class WordCountMap {
+    private static final int DEFAULT_CAPACITY = 1 << 10;
+    // 数组长度能取到的最大的 2 的幂
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private String[] keys;
+    private int[] hashes;
+    private long[] counts;
+    private int size;
+    private int mask;
+
+    public WordCountMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public WordCountMap(int expectedSize) {
+        // 用 long 计算，expectedSize 超过 Integer.MAX_VALUE / 2 时 int 会溢出成负数
+        long capacity = Long.highestOneBit(Math.max(4L, expectedSize * 2L - 1)) << 1;
+        allocate((int) Math.min(capacity, MAX_CAPACITY));
+    }
+
+    public void increment(CharSequence word) {
+        add(word, 1L);
+    }
+
+    public void add(CharSequence word, long delta) {
+        int hash = hash(word);
+        int index = hash & mask;
+        while (keys[index] != null) {
+            if (hashes[index] == hash && contentEquals(keys[index], word)) {
+                counts[index] += delta;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[index] = word.toString();
+        hashes[index] = hash;
+        counts[index] = delta;
+        if (++size > (mask + 1) >> 1) {
+            rehash();
+        }
+    }
+
+    public long get(CharSequence word) {
+        int hash = hash(word);
+        int index = hash & mask;
+        while (keys[index] != null) {
+            if (hashes[index] == hash && contentEquals(keys[index], word)) {
+                return counts[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return 0L;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // 把 other 中的计数累加到当前表，返回当前表
+    public WordCountMap mergeFrom(WordCountMap other) {
+        for (int i = 0; i < other.keys.length; i++) {
+            if (other.keys[i] != null) {
+                add(other.keys[i], other.counts[i]);
+            }
+        }
+        return this;
+    }
+
+    public void forEach(ObjLongConsumer<String> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                action.accept(keys[i], counts[i]);
+            }
+        }
+    }
+
+    // 转换成与 Collectors.groupingBy(w -> w, Collectors.counting()) 相同形式的结果
+    public Map<String, Long> toMap() {
+        Map<String, Long> map = new HashMap<>(size * 2);
+        forEach(map::put);
+        return map;
+    }
+
+    /**
+     * 出现次数最多的 k 个单词，按次数降序（次数相同按字典序），使用大小为 k 的最小堆，复杂度 O(n log k)
+     */
+    public List<Map.Entry<String, Long>> topK(int k) {
+        Comparator<Map.Entry<String, Long>> order = Map.Entry.<String, Long>comparingByValue()
+                .thenComparing(Map.Entry.<String, Long>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(Math.max(1, k), order);
+        for (int i = 0; i < keys.length && k > 0; i++) {
+            if (keys[i] == null) {
+                continue;
+            }
+            if (heap.size() < k) {
+                heap.add(new AbstractMap.SimpleImmutableEntry<>(keys[i], counts[i]));
+            } else {
+                Map.Entry<String, Long> smallest = heap.peek();
+                if (counts[i] > smallest.getValue()
+                        || (counts[i] == smallest.getValue() && keys[i].compareTo(smallest.getKey()) < 0)) {
+                    heap.poll();
+                    heap.add(new AbstractMap.SimpleImmutableEntry<>(keys[i], counts[i]));
+                }
+            }
+        }
+        List<Map.Entry<String, Long>> result = new ArrayList<>(heap);
+        result.sort(order.reversed());
+        return result;
+    }
+
+    private void rehash() {
+        String[] oldKeys = keys;
+        int[] oldHashes = hashes;
+        long[] oldCounts = counts;
+        if (oldKeys.length == MAX_CAPACITY) {
+            throw new IllegalStateException("WordCountMap cannot grow beyond " + MAX_CAPACITY + " slots");
+        }
+        allocate(oldKeys.length << 1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                int index = oldHashes[i] & mask;
+                while (keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                hashes[index] = oldHashes[i];
+                counts[index] = oldCounts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        hashes = new int[capacity];
+        counts = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    // 与 String.hashCode() 相同，再做一次高低位混合，减少线性探测的聚集
+    private static int hash(CharSequence s) {
+        int h = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean contentEquals(String key, CharSequence s) {
+        int n = key.length();
+        if (n != s.length()) {
+            return false;
+        }
+        for (int i = 0; i < n; i++) {
+            if (key.charAt(i) != s.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
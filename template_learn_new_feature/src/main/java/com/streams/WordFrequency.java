@@ -0,0 +1,84 @@
+package com.streams;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Function;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+/**
+ * 大文本的并行词频统计与 Top-K
+ *
+ * 基于 WordSpliterator 的字节区间拆分：每个叶子任务把自己区间内的单词计入独立的 WordCountMap（开放寻址，long 计数），
+ * 不需要 ConcurrentHashMap<String, Long> 那样的 CAS 与装箱，最后在 join 时两两合并。
+ * 结果与 Collectors.groupingBy(w -> w, Collectors.counting()) 相同。
+ */
+public class WordFrequency {
+
+    public static WordCountMap count(Path file) throws IOException {
+        return count(file, ForkJoinPool.commonPool());
+    }
+
+    public static WordCountMap count(Path file, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return pool.invoke(new CountTask(WordSpliterator.of(channel)));
+        }
+    }
+
+    /**
+     * 用于任意单词流的收集器，并行流中每个分段各自计数后再合并
+     */
+    public static Collector<CharSequence, WordCountMap, WordCountMap> counting() {
+        return Collector.of(WordCountMap::new, WordCountMap::increment, WordCountMap::mergeFrom);
+    }
+
+    private static class CountTask extends RecursiveTask<WordCountMap> {
+        private final WordSpliterator spliterator;
+
+        CountTask(WordSpliterator spliterator) {
+            this.spliterator = spliterator;
+        }
+
+        @Override
+        protected WordCountMap compute() {
+            WordSpliterator prefix = spliterator.trySplit();
+            if (prefix == null) {
+                WordCountMap counts = new WordCountMap();
+                spliterator.forEachWord(counts::increment);
+                return counts;
+            }
+            CountTask left = new CountTask(prefix);
+            left.fork();
+            WordCountMap right = compute();
+            WordCountMap leftCounts = left.join();
+            // 把较小的表合并到较大的表中
+            return leftCounts.size() >= right.size() ? leftCounts.mergeFrom(right) : right.mergeFrom(leftCounts);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get("../gutenberg/alice30.txt");
+
+        WordCountMap counts = count(path);
+        List<Map.Entry<String, Long>> top10 = counts.topK(10);
+        System.out.println("distinct words: " + counts.size());
+        top10.forEach(e -> System.out.println(e.getKey() + ": " + e.getValue()));
+
+        // 与 groupingBy + counting 的结果对比
+        String contents = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        Map<String, Long> expected = Arrays.stream(contents.split("\\PL+"))
+                .filter(w -> !w.isEmpty())
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+        System.out.println("same as groupingBy: " + expected.equals(counts.toMap()));
+    }
+}
@@ -0,0 +1,220 @@
+package com.streams;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 流式分词器：从 FileChannel 中按固定大小的缓冲区读取 UTF-8 文本，按非字母的码点切分出单词
+ * 切分规则与 contents.split("\\PL+") 相同（只是不会产生开头的空字符串），但不需要先把整个文件读成 String
+ *
+ * 并行时按字节区间拆分：从区间中点向后找到第一个 ASCII 的非字母字节作为边界。UTF-8 多字节序列中的每个字节都 >= 0x80，
+ * 所以这个位置一定不在某个字符中间，也一定不在某个单词中间，两边可以各自独立解码。
+ * 多个 WordSpliterator 共享同一个 FileChannel，只使用带 position 参数的 read()，互不影响。
+ */
+public class WordSpliterator implements Spliterator<String> {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // 小于该字节数的区间不再拆分
+    private static final long MIN_SPLIT_BYTES = 1 << 20;
+    private static final int MALFORMED = 0xFFFD;
+
+    private final FileChannel channel;
+    private long position;
+    private final long end;
+    private ByteBuffer buffer;
+    private final StringBuilder word = new StringBuilder();
+
+    public WordSpliterator(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.position = start;
+        this.end = end;
+    }
+
+    public static WordSpliterator of(FileChannel channel) throws IOException {
+        return new WordSpliterator(channel, 0, channel.size());
+    }
+
+    /**
+     * 文件中所有单词组成的流，使用完毕后需要关闭（try-with-resources）以关闭底层文件
+     */
+    public static Stream<String> words(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return StreamSupport.stream(of(channel), false).onClose(() -> {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * 零分配的回调方式：每个单词都写在同一个复用的 CharSequence 中，只在回调期间有效，需要保留时自行 toString()
+     */
+    public static void forEachWord(Path path, Consumer<? super CharSequence> action) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            of(channel).forEachWord(action);
+        }
+    }
+
+    public void forEachWord(Consumer<? super CharSequence> action) {
+        while (nextWord()) {
+            action.accept(word);
+        }
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super String> action) {
+        if (!nextWord()) {
+            return false;
+        }
+        action.accept(word.toString());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super String> action) {
+        while (nextWord()) {
+            action.accept(word.toString());
+        }
+    }
+
+    @Override
+    public WordSpliterator trySplit() {
+        // 已经开始读取的区间不再拆分
+        if (buffer != null || end - position < MIN_SPLIT_BYTES) {
+            return null;
+        }
+        long boundary = findBoundary(position + (end - position) / 2);
+        if (boundary < 0) {
+            return null;
+        }
+        WordSpliterator prefix = new WordSpliterator(channel, position, boundary);
+        position = boundary;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        // 英文文本平均每个单词（含分隔符）约 6 个字节
+        return (end - position - (buffer == null ? 0 : buffer.remaining())) / 6 + 1;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    // 读取下一个单词到 word 中，没有更多单词时返回 false
+    private boolean nextWord() {
+        word.setLength(0);
+        while (true) {
+            int codePoint = nextCodePoint();
+            if (codePoint < 0) {
+                return word.length() > 0;
+            }
+            if (Character.isLetter(codePoint)) {
+                word.appendCodePoint(codePoint);
+            } else if (word.length() > 0) {
+                return true;
+            }
+        }
+    }
+
+    // 解码下一个码点，到达区间末尾时返回 -1，非法的 UTF-8 序列按 U+FFFD 处理
+    private int nextCodePoint() {
+        if (!ensure(1)) {
+            return -1;
+        }
+        int b0 = buffer.get() & 0xFF;
+        if (b0 < 0x80) {
+            return b0;
+        }
+        int length;
+        int codePoint;
+        if ((b0 & 0xE0) == 0xC0) {
+            length = 2;
+            codePoint = b0 & 0x1F;
+        } else if ((b0 & 0xF0) == 0xE0) {
+            length = 3;
+            codePoint = b0 & 0x0F;
+        } else if ((b0 & 0xF8) == 0xF0) {
+            length = 4;
+            codePoint = b0 & 0x07;
+        } else {
+            return MALFORMED;
+        }
+        if (!ensure(length - 1)) {
+            return MALFORMED;
+        }
+        for (int i = 1; i < length; i++) {
+            int b = buffer.get(buffer.position()) & 0xFF;
+            if ((b & 0xC0) != 0x80) {
+                return MALFORMED;
+            }
+            buffer.get();
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+        return Character.isValidCodePoint(codePoint) ? codePoint : MALFORMED;
+    }
+
+    // 保证缓冲区中至少有 n 个未读字节，区间内已没有足够数据时返回 false
+    private boolean ensure(int n) {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            buffer.flip();
+        }
+        while (buffer.remaining() < n) {
+            if (position >= end) {
+                return false;
+            }
+            buffer.compact();
+            int limit = (int) Math.min(buffer.remaining(), end - position);
+            buffer.limit(buffer.position() + limit);
+            int read = read(buffer, position);
+            buffer.flip();
+            if (read <= 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    // 从 from 开始向后查找第一个 ASCII 非字母字节，找不到返回 -1
+    private long findBoundary(long from) {
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long offset = from;
+        while (offset < end) {
+            probe.clear();
+            probe.limit((int) Math.min(probe.capacity(), end - offset));
+            int read = read(probe, offset);
+            if (read <= 0) {
+                return -1;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = probe.get(i);
+                if (b >= 0 && !Character.isLetter(b)) {
+                    return offset + i;
+                }
+            }
+            offset += read;
+        }
+        return -1;
+    }
+
+    private int read(ByteBuffer target, long at) {
+        try {
+            return channel.read(target, at);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}